@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Load Benchmark<br><br>
+ *
+ *
+ * Time to load a {@link JSONConfig} from a file of 1, 10 and 100 MB,
+ * and the peak heap usage it takes (the 'peakBytes' counter, in
+ * bytes above the heap used before the load).<br><br>
+ *
+ * The allocations of the load are given by the 'gc' profiler,
+ * enabled in the build.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class LoadBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int megabytes;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = File.createTempFile("load", ".json");
+        long size = megabytes * 1024L * 1024L;
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write("{\n");
+
+            long written = 2;
+
+            for (int section = 0; written < size; section++)
+            {
+                StringBuilder builder = new StringBuilder(section == 0 ? "" : ",\n");
+                builder.append("  \"section").append(section).append("\": {\n");
+
+                for (int i = 0; i < 100; i++)
+                {
+                    builder.append("    \"key").append(i).append("\": \"value ").append(section).append('.').append(i).append("\",\n");
+                    builder.append("    \"number").append(i).append("\": ").append(section * 100 + i).append(i == 99 ? "\n" : ",\n");
+                }
+
+                builder.append("  }");
+                writer.write(builder.toString());
+
+                written += builder.length();
+            }
+
+            writer.write("\n}\n");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.delete(file.toPath());
+    }
+
+    @Benchmark
+    public JSONConfig load(Peak peak)
+    {
+        return new JSONConfig(IOSource.file(file));
+    }
+
+    /**
+     * The peak heap usage of the loads of an iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Peak
+    {
+        public long peakBytes;
+
+        private long before;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            peakBytes = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void before()
+        {
+            System.gc();
+            before = 0;
+
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            {
+                if (pool.getType() == MemoryType.HEAP)
+                {
+                    pool.resetPeakUsage();
+                    before += pool.getUsage().getUsed();
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void after()
+        {
+            long peak = 0;
+
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            {
+                if (pool.getType() == MemoryType.HEAP)
+                {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+
+            peakBytes = Math.max(peakBytes, peak - before);
+        }
+    }
+}
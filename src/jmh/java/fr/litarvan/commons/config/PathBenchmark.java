@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The Path Benchmark<br><br>
+ *
+ *
+ * Lookups of a value nested at 1, 5 and 10 levels, through the
+ * flattened path index of a {@link JSONConfig} ('indexed') and
+ * by splitting the path and walking its objects one level at a
+ * time, like the config did before having the index ('walked').
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class PathBenchmark
+{
+    @Param({"1", "5", "10"})
+    public int depth;
+
+    private JSONConfig config;
+    private JsonObject root;
+    private String path;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder path = new StringBuilder("key");
+
+        for (int i = 1; i < depth; i++)
+        {
+            path.insert(0, "level" + i + ".");
+        }
+
+        this.path = path.toString();
+
+        config = new JSONConfig();
+        config.autoSave(false);
+
+        // Siblings at the last level, so that the object isn't trivially small
+        for (int i = 0; i < 100; i++)
+        {
+            config.set(this.path + i, i);
+        }
+
+        config.set(this.path, 42);
+
+        root = new JsonObject();
+        JsonObject parent = root;
+
+        for (int i = depth - 1; i > 0; i--)
+        {
+            JsonObject child = new JsonObject();
+            parent.add("level" + i, child);
+            parent = child;
+        }
+
+        for (int i = 0; i < 100; i++)
+        {
+            parent.addProperty("key" + i, i);
+        }
+
+        parent.addProperty("key", 42);
+    }
+
+    @Benchmark
+    public boolean indexed()
+    {
+        return config.has(path);
+    }
+
+    @Benchmark
+    public boolean walked()
+    {
+        JsonElement element = root;
+
+        for (String name : path.split("\\."))
+        {
+            if (element == null || !element.isJsonObject())
+            {
+                return false;
+            }
+
+            element = element.getAsJsonObject().get(name);
+        }
+
+        return element != null;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The Primitive Benchmark<br><br>
+ *
+ *
+ * Reads of numbers and booleans through the primitive getters of
+ * a {@link JSONConfig} and of a {@link PropertiesConfig}, directly
+ * and through a bound interface (see {@link ConfigProvider#bind(String, Class)}).<br><br>
+ *
+ * None of them should allocate: the 'gc.alloc.rate.norm' result
+ * of the 'gc' profiler, enabled in the build, should stay at about
+ * 0 B/op for every benchmark ('-prof gc' when running JMH directly).
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class PrimitiveBenchmark
+{
+    @Param({"json", "properties"})
+    public String format;
+
+    private Config config;
+    private Values values;
+
+    @Setup
+    public void setup()
+    {
+        if (format.equals("json"))
+        {
+            JSONConfig json = new JSONConfig();
+            json.autoSave(false);
+
+            json.set("server.port", 25565);
+            json.set("server.timeout", 3000000000L);
+            json.set("server.ratio", 0.75);
+            json.set("server.online", true);
+
+            config = json;
+        }
+        else
+        {
+            PropertiesConfig properties = new PropertiesConfig();
+            properties.autoSave(false);
+
+            properties.set("server.port", "25565");
+            properties.set("server.timeout", "3000000000");
+            properties.set("server.ratio", "0.75");
+            properties.set("server.online", "true");
+
+            config = properties;
+        }
+
+        this.config = config;
+        this.values = ConfigBinding.bind(config, "server", Values.class);
+    }
+
+    @Benchmark
+    public int atInt()
+    {
+        return config.atInt("server.port", 0);
+    }
+
+    @Benchmark
+    public long atLong()
+    {
+        return config.atLong("server.timeout", 0);
+    }
+
+    @Benchmark
+    public double atDouble()
+    {
+        return config.atDouble("server.ratio", 0);
+    }
+
+    @Benchmark
+    public boolean atBoolean()
+    {
+        return config.atBoolean("server.online", false);
+    }
+
+    @Benchmark
+    public int boundInt()
+    {
+        return values.port();
+    }
+
+    @Benchmark
+    public long boundLong()
+    {
+        return values.timeout();
+    }
+
+    /**
+     * The values read through a binding
+     */
+    public interface Values
+    {
+        int port();
+
+        long timeout();
+    }
+}
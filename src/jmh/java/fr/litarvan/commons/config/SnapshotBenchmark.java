@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The Snapshot Benchmark<br><br>
+ *
+ *
+ * Reads of a {@link JSONConfig} while another thread sets values
+ * in it, with and without the snapshot mode (see
+ * {@link JSONConfig#snapshots(boolean)}).<br><br>
+ *
+ * Three threads read and one writes by default. To see how reads
+ * scale with the number of cores, change the number of reading
+ * threads with the '-tg' option of JMH, '-tg 1,1' then '-tg 7,1'
+ * by example (readers first).
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class SnapshotBenchmark
+{
+    @Param({"false", "true"})
+    public boolean snapshots;
+
+    @Param({"1000", "50000"})
+    public int size;
+
+    private JSONConfig config;
+    private String[] paths;
+
+    @Setup
+    public void setup()
+    {
+        config = new JSONConfig();
+        config.autoSave(false);
+
+        paths = new String[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            paths[i] = "section" + (i % 100) + ".key" + i;
+            config.set(paths[i], i);
+        }
+
+        config.snapshots(snapshots);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public int read(Cursor cursor)
+    {
+        return config.atInt(paths[cursor.next(paths.length)], 0);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void write(Cursor cursor)
+    {
+        config.set(paths[cursor.next(paths.length)], cursor.index);
+    }
+
+    /**
+     * The path read or written next by a thread
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int index;
+
+        int next(int length)
+        {
+            // A prime step goes through every path in a shuffled order
+            index = (index + 7919) % length;
+            return index;
+        }
+    }
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.FileSource;
+import fr.litarvan.commons.io.IOSource;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Binary Config<br><br>
+ *
+ *
+ * A read-mostly config of string keys and values, made for
+ * huge key sets. Its file is memory mapped and holds the entries
+ * sorted by key, so a value is found by a binary search in the
+ * mapped file, without loading the entries in the heap.<br><br>
+ *
+ * Values that are set are kept in memory until the config is
+ * saved, which rewrites the whole file.<br><br>
+ *
+ * To create one, consider using the {@link ConfigProvider#binary}
+ * methods. An existing config can be converted using :
+ * <pre>
+ *     BinaryConfig binary = provider.binary(new File("table.bin"));
+ *     binary.edit(c -&gt; properties.forEach((key, value) -&gt; c.set((String) key, (String) value)));
+ * </pre>
+ *
+ * File layout (big endian) :
+ * <pre>
+ *     int magic
+ *     entries, sorted by the UTF-8 bytes of their key : int key length, key, int value length, value (UTF-8)
+ *     int[] offset of each entry
+ *     int entry count
+ *     int magic
+ * </pre>
+ *
+ * As the offsets are ints and the file is mapped in a single buffer,
+ * a binary config can't be bigger than 2 GB ({@link #MAX_SIZE} bytes) :
+ * opening a bigger file, or saving values that would make it bigger,
+ * throws an {@link IllegalStateException}.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class BinaryConfig extends FileConfig
+{
+    /**
+     * The maximum size of the file of a binary config, in bytes
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private static final int MAGIC = 0x4C434243;
+    private static final Table EMPTY = new Table(ByteBuffer.allocate(0), 0, 0);
+
+    private volatile Table table = EMPTY;
+    private final Map<String, String> changes = new ConcurrentHashMap<>();
+    private volatile NavigableSet<String> keys;
+
+    public BinaryConfig()
+    {
+        this(null);
+    }
+
+    public BinaryConfig(File file)
+    {
+        // Not using super(file) as it would load before the fields are initialized
+        super();
+
+        if (file != null)
+        {
+            this.in(file);
+
+            if (file.exists())
+            {
+                this.load();
+            }
+        }
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        if (!changes.isEmpty())
+        {
+            String value = changes.get(key);
+
+            if (value != null)
+            {
+                return value;
+            }
+        }
+
+        Table table = this.table;
+        ByteBuffer buffer = table.buffer;
+
+        int low = 0;
+        int high = table.count - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int entry = buffer.getInt(table.offsets + middle * 4);
+            int keyLength = buffer.getInt(entry);
+            int comparison = compare(buffer, entry + 4, keyLength, key);
+
+            if (comparison < 0)
+            {
+                low = middle + 1;
+            }
+            else if (comparison > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return string(buffer, entry + 4 + keyLength);
+            }
+        }
+
+        return def;
+    }
+
+    /**
+     * Compare a mapped UTF-8 key with a string, by code point
+     *
+     * @return A negative number if the mapped key is lower, 0 if equal, a positive one if greater
+     */
+    private static int compare(ByteBuffer buffer, int start, int length, String key)
+    {
+        int position = start;
+        int end = start + length;
+        int index = 0;
+
+        while (position < end && index < key.length())
+        {
+            int b = buffer.get(position) & 0xFF;
+            int codePoint;
+
+            if (b < 0x80)
+            {
+                codePoint = b;
+                position += 1;
+            }
+            else if (b < 0xE0)
+            {
+                codePoint = ((b & 0x1F) << 6) | (buffer.get(position + 1) & 0x3F);
+                position += 2;
+            }
+            else if (b < 0xF0)
+            {
+                codePoint = ((b & 0x0F) << 12) | ((buffer.get(position + 1) & 0x3F) << 6) | (buffer.get(position + 2) & 0x3F);
+                position += 3;
+            }
+            else
+            {
+                codePoint = ((b & 0x07) << 18) | ((buffer.get(position + 1) & 0x3F) << 12) | ((buffer.get(position + 2) & 0x3F) << 6) | (buffer.get(position + 3) & 0x3F);
+                position += 4;
+            }
+
+            int other = key.codePointAt(index);
+
+            if (codePoint != other)
+            {
+                return codePoint < other ? -1 : 1;
+            }
+
+            index += Character.charCount(other);
+        }
+
+        if (position < end)
+        {
+            return 1;
+        }
+
+        return index < key.length() ? -1 : 0;
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        String previous;
+
+        // Blocked during an edition (see FileConfig#edit)
+        synchronized (this)
+        {
+            previous = listeners.isEmpty() ? null : get(key, null);
+            changes.put(key, value);
+        }
+
+        NavigableSet<String> keys = this.keys;
+
+        if (keys != null)
+        {
+            keys.add(key);
+        }
+
+        listeners.fire(key, previous, value, null);
+        changed();
+    }
+
+    /**
+     * Make an immutable copy of the config, with every entry of
+     * the file loaded in the heap (see {@link FrozenConfig}).
+     *
+     * @return The frozen copy of the config
+     */
+    @Override
+    public FrozenConfig freeze()
+    {
+        return FrozenConfig.strings(values(table, changes));
+    }
+
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        NavigableSet<String> keys = this.keys;
+
+        if (keys == null)
+        {
+            keys = index();
+        }
+
+        return Keys.range(keys, prefix);
+    }
+
+    /**
+     * Read the keys of the table, once, in an index also receiving
+     * the keys of the values set from now on
+     */
+    private synchronized NavigableSet<String> index()
+    {
+        if (keys != null)
+        {
+            return keys;
+        }
+
+        Table table = this.table;
+        ByteBuffer buffer = table.buffer;
+        List<String> names = new ArrayList<>(table.count);
+
+        for (int i = 0; i < table.count; i++)
+        {
+            names.add(string(buffer, buffer.getInt(table.offsets + i * 4)));
+        }
+
+        NavigableSet<String> keys = Keys.index(names);
+        this.keys = keys;
+
+        // Values set while reading the table may have missed the index
+        keys.addAll(changes.keySet());
+
+        return keys;
+    }
+
+    /**
+     * Load every entry of a table in the heap, with the unsaved changes
+     */
+    private static Map<String, String> values(Table table, Map<String, String> changes)
+    {
+        ByteBuffer buffer = table.buffer;
+        Map<String, String> values = new HashMap<>(table.count + changes.size());
+
+        for (int i = 0; i < table.count; i++)
+        {
+            int entry = buffer.getInt(table.offsets + i * 4);
+            int keyLength = buffer.getInt(entry);
+
+            values.put(string(buffer, entry), string(buffer, entry + 4 + keyLength));
+        }
+
+        values.putAll(changes);
+
+        return values;
+    }
+
+    /**
+     * Read a mapped string, preceded by its length
+     */
+    private static String string(ByteBuffer buffer, int start)
+    {
+        byte[] bytes = new byte[buffer.getInt(start)];
+
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(start + 4);
+        duplicate.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public synchronized FileConfig load()
+    {
+        Map<String, String> previous = listeners.isEmpty() ? null : values(table, changes);
+
+        table = map(file());
+        changes.clear();
+        keys = null;
+
+        fire(previous);
+
+        return this;
+    }
+
+    /**
+     * Map the file again, keeping the values set since the last save
+     */
+    @Override
+    protected synchronized void rebase()
+    {
+        Map<String, String> previous = listeners.isEmpty() ? null : values(table, changes);
+
+        table = map(file());
+        keys = null;
+
+        fire(previous);
+    }
+
+    /**
+     * Notify the listeners of every value that differs from the given ones
+     *
+     * @param previous The previous values, or null if there isn't any listener
+     */
+    private void fire(Map<String, String> previous)
+    {
+        if (previous == null)
+        {
+            return;
+        }
+
+        Map<String, String> values = values(table, changes);
+
+        previous.forEach((key, value) -> {
+            if (!values.containsKey(key))
+            {
+                listeners.fire(key, value, null, null);
+            }
+        });
+        values.forEach((key, value) -> listeners.fire(key, previous.get(key), value, null));
+    }
+
+    private static Table map(File file)
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (channel.size() > MAX_SIZE)
+            {
+                throw new IllegalStateException("'" + file.getAbsolutePath() + "' is bigger than the " + MAX_SIZE + " bytes limit of binary configs");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = buffer.limit();
+
+            if (size < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC)
+            {
+                throw new IllegalStateException("'" + file.getAbsolutePath() + "' isn't a binary config");
+            }
+
+            int count = buffer.getInt(size - 8);
+
+            if (count < 0 || count > (size - 12) / 4)
+            {
+                throw new IllegalStateException("'" + file.getAbsolutePath() + "' is a corrupted binary config");
+            }
+
+            return new Table(buffer, count, size - 8 - count * 4);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't read config", e);
+        }
+    }
+
+    @Override
+    public synchronized FileConfig save()
+    {
+        File file = file();
+        File temp = new File(file.getPath() + ".tmp");
+
+        List<Change> changed = new ArrayList<>(changes.size());
+        changes.forEach((key, value) -> changed.add(new Change(key, value)));
+        changed.sort((a, b) -> compare(a.keyBytes, b.keyBytes));
+
+        if (file.getParentFile() != null && !file.getParentFile().exists())
+        {
+            file.getParentFile().mkdirs();
+        }
+
+        writeFile(() -> {
+            try
+            {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024)))
+                {
+                    write(out, changed);
+                }
+
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Can't save config", e);
+            }
+            finally
+            {
+                // Left only if the write failed, also when it exceeded the size limit
+                temp.delete();
+            }
+
+            table = map(file);
+        });
+
+        // Values set during the save are kept for the next one
+        changed.forEach(change -> changes.remove(change.key, change.value));
+
+        return this;
+    }
+
+    /**
+     * Write the mapped entries merged with the changed ones
+     *
+     * @throws IllegalStateException If the file would be bigger than {@link #MAX_SIZE}
+     */
+    private void write(DataOutputStream out, List<Change> changed) throws IOException
+    {
+        Table table = this.table;
+        ByteBuffer buffer = table.buffer.duplicate();
+
+        int[] offsets = new int[table.count + changed.size()];
+        int count = 0;
+        int mapped = 0;
+        int next = 0;
+
+        // Counted apart, as the size of the stream stops at Integer.MAX_VALUE
+        long size = 4;
+
+        out.writeInt(MAGIC);
+
+        while (mapped < table.count || next < changed.size())
+        {
+            int entry = mapped < table.count ? buffer.getInt(table.offsets + mapped * 4) : -1;
+            int comparison = entry == -1 ? 1 : next == changed.size() ? -1 : compare(buffer, entry, changed.get(next).keyBytes);
+
+            // The offsets and the footer written after the entries must fit too
+            if (size + 4L * (count + 1) + 8 > MAX_SIZE)
+            {
+                throw tooBig();
+            }
+
+            offsets[count++] = (int) size;
+
+            if (comparison < 0)
+            {
+                int keyLength = buffer.getInt(entry);
+                int length = 8 + keyLength + buffer.getInt(entry + 4 + keyLength);
+                byte[] bytes = new byte[length];
+
+                size += length;
+
+                buffer.position(entry);
+                buffer.get(bytes);
+                out.write(bytes);
+
+                mapped++;
+                continue;
+            }
+
+            Change change = changed.get(next++);
+            size += 8L + change.keyBytes.length + change.valueBytes.length;
+
+            out.writeInt(change.keyBytes.length);
+            out.write(change.keyBytes);
+            out.writeInt(change.valueBytes.length);
+            out.write(change.valueBytes);
+
+            if (comparison == 0)
+            {
+                mapped++;
+            }
+        }
+
+        if (size + 4L * count + 8 > MAX_SIZE)
+        {
+            throw tooBig();
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            out.writeInt(offsets[i]);
+        }
+
+        out.writeInt(count);
+        out.writeInt(MAGIC);
+    }
+
+    private static IllegalStateException tooBig()
+    {
+        return new IllegalStateException("The config can't be saved, it would be bigger than the " + MAX_SIZE + " bytes limit of binary configs");
+    }
+
+    private static int compare(ByteBuffer buffer, int entry, byte[] key)
+    {
+        int length = buffer.getInt(entry);
+
+        for (int i = 0; i < length && i < key.length; i++)
+        {
+            int comparison = Integer.compare(buffer.get(entry + 4 + i) & 0xFF, key[i] & 0xFF);
+
+            if (comparison != 0)
+            {
+                return comparison;
+            }
+        }
+
+        return Integer.compare(length, key.length);
+    }
+
+    private static int compare(byte[] a, byte[] b)
+    {
+        for (int i = 0; i < a.length && i < b.length; i++)
+        {
+            int comparison = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+
+            if (comparison != 0)
+            {
+                return comparison;
+            }
+        }
+
+        return Integer.compare(a.length, b.length);
+    }
+
+    @Override
+    public synchronized FileConfig defaultIn(IOSource source)
+    {
+        File file = file();
+
+        if (file.exists())
+        {
+            return this;
+        }
+
+        if (!source.exists())
+        {
+            throw new RuntimeException("Default file doesn't exist");
+        }
+
+        try (InputStream in = source.provideInput())
+        {
+            if (file.getParentFile() != null && !file.getParentFile().exists())
+            {
+                file.getParentFile().mkdirs();
+            }
+
+            Files.copy(in, file.toPath());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't read default config", e);
+        }
+
+        return load();
+    }
+
+    private File file()
+    {
+        if (file == null)
+        {
+            throw new IllegalStateException("Config file isn't defined");
+        }
+
+        if (!(file instanceof FileSource))
+        {
+            throw new IllegalStateException("Binary configs can only be stored in files");
+        }
+
+        return ((FileSource) file).getFile();
+    }
+
+    /**
+     * @return The number of entries in the file, without the unsaved ones
+     */
+    public int size()
+    {
+        return table.count;
+    }
+
+    private static final class Change
+    {
+        final String key;
+        final String value;
+        final byte[] keyBytes;
+        final byte[] valueBytes;
+
+        Change(String key, String value)
+        {
+            this.key = key;
+            this.value = value;
+            this.keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            this.valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Table
+    {
+        final ByteBuffer buffer;
+        final int count;
+        final int offsets;
+
+        Table(ByteBuffer buffer, int count, int offsets)
+        {
+            this.buffer = buffer;
+            this.count = count;
+            this.offsets = offsets;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The Compiled Cache<br><br>
+ *
+ *
+ * Reads and writes the binary copy of a parsed config that is
+ * kept next to its file (see {@link FileConfig#compiledCache(boolean)}).<br><br>
+ *
+ * The copy starts with the size, modification time and CRC32
+ * of the file it was made from, and is only used while the file
+ * still matches them.<br><br>
+ *
+ * The CRC32 is skipped only when the file was last modified strictly
+ * before the copy was written : modification times can have a one
+ * second resolution, so a file modified during the second the copy
+ * was written could have changed without its time changing. Its
+ * content is then checked, like the one of a file whose time changed
+ * (the time is then saved again in the copy, so the next loads can
+ * skip the check).
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class CompiledCache
+{
+    static final byte JSON = 1;
+    static final byte PROPERTIES = 2;
+
+    private static final int MAGIC = 0x4C434643;
+    private static final byte VERSION = 1;
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final byte STRING = 3;
+    private static final byte NUMBER = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte NULL = 7;
+
+    private static final int MODIFIED_OFFSET = 14;
+
+    private final File source;
+    private final File cache;
+    private final byte kind;
+
+    private long size;
+    private long modified;
+    private long checksum;
+    private boolean checked;
+
+    /**
+     * @param source The file of the config
+     * @param kind The kind of content, {@link #JSON} or {@link #PROPERTIES}
+     */
+    CompiledCache(File source, byte kind)
+    {
+        this.source = source;
+        this.cache = new File(source.getPath() + ".cache");
+        this.kind = kind;
+    }
+
+    /**
+     * Map the content of the cache, if it matches the config file.<br>
+     * The state of the file is remembered, to check it didn't change
+     * when writing the cache with {@link #write(Content)}.
+     *
+     * @return The content of the cache, or null if it is missing or outdated
+     */
+    ByteBuffer open()
+    {
+        size = source.length();
+        modified = source.lastModified();
+        checked = false;
+
+        ByteBuffer buffer = map();
+
+        if (buffer == null && !checked)
+        {
+            // Computed before the file is parsed, so the copy can't get the checksum of a newer content
+            try
+            {
+                checksum = checksum();
+                checked = true;
+            }
+            catch (IOException ignored)
+            {
+                // The cache won't be written
+            }
+        }
+
+        return buffer;
+    }
+
+    private ByteBuffer map()
+    {
+        long written = cache.lastModified();
+
+        if (written == 0)
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 30 || buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.get() != kind)
+            {
+                return null;
+            }
+
+            if (buffer.getLong() != size)
+            {
+                return null;
+            }
+
+            long cachedModified = buffer.getLong();
+            long cachedChecksum = buffer.getLong();
+
+            if (cachedModified == modified && modified < written)
+            {
+                return buffer;
+            }
+
+            // Touched, copied, or modified during the second the copy was written
+            checksum = checksum();
+            checked = true;
+
+            if (checksum != cachedChecksum)
+            {
+                return null;
+            }
+
+            touch();
+
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Write the cache, if the config file didn't change since
+     * {@link #open()} was called. Failing to write it is ignored,
+     * it will be written on the next load.
+     *
+     * @param content The writer of the content of the cache
+     */
+    void write(Content content)
+    {
+        if (!checked || source.length() != size || source.lastModified() != modified)
+        {
+            return;
+        }
+
+        File temp = new File(cache.getPath() + ".tmp");
+
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeByte(kind);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeLong(checksum);
+
+                content.write(out);
+            }
+
+            Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ignored)
+        {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Save the current modification time of the config file in the
+     * cache, also updating the time of the cache, so its checksum isn't
+     * computed again on the next load (unless it is still too recent)
+     */
+    private void touch()
+    {
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.WRITE))
+        {
+            ByteBuffer time = ByteBuffer.allocate(8);
+            time.putLong(0, modified);
+
+            channel.write(time, MODIFIED_OFFSET);
+        }
+        catch (IOException ignored)
+        {
+            // The checksum will just be computed again
+        }
+    }
+
+    private long checksum() throws IOException
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ))
+        {
+            while (channel.read(buffer) != -1)
+            {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    static void writeTree(DataOutputStream out, JsonElement element) throws IOException
+    {
+        if (element.isJsonObject())
+        {
+            out.writeByte(OBJECT);
+            out.writeInt(element.getAsJsonObject().size());
+
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+            {
+                writeString(out, entry.getKey());
+                writeTree(out, entry.getValue());
+            }
+        }
+        else if (element.isJsonArray())
+        {
+            out.writeByte(ARRAY);
+            out.writeInt(element.getAsJsonArray().size());
+
+            for (JsonElement child : element.getAsJsonArray())
+            {
+                writeTree(out, child);
+            }
+        }
+        else if (element.isJsonNull())
+        {
+            out.writeByte(NULL);
+        }
+        else
+        {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+
+            if (primitive.isBoolean())
+            {
+                out.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            }
+            else
+            {
+                out.writeByte(primitive.isNumber() ? NUMBER : STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+    }
+
+    static JsonElement readTree(ByteBuffer buffer)
+    {
+        byte tag = buffer.get();
+
+        switch (tag)
+        {
+            case OBJECT:
+                JsonObject object = new JsonObject();
+
+                for (int i = buffer.getInt(); i > 0; i--)
+                {
+                    String name = readString(buffer);
+                    object.add(name, readTree(buffer));
+                }
+
+                return object;
+            case ARRAY:
+                JsonArray array = new JsonArray();
+
+                for (int i = buffer.getInt(); i > 0; i--)
+                {
+                    array.add(readTree(buffer));
+                }
+
+                return array;
+            case STRING:
+                return new JsonPrimitive(readString(buffer));
+            case NUMBER:
+                return new JsonPrimitive(new Digits(readString(buffer)));
+            case TRUE:
+                return new JsonPrimitive(true);
+            case FALSE:
+                return new JsonPrimitive(false);
+            case NULL:
+                return JsonNull.INSTANCE;
+            default:
+                throw new IllegalStateException("Corrupted compiled cache, unknown tag " + tag);
+        }
+    }
+
+    static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writer of the content of a cache
+     */
+    @FunctionalInterface
+    interface Content
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A number read from the cache, kept as it was written in the
+     * config file, like the numbers parsed from it, so the config is
+     * saved the same way whether it was loaded from the cache or not
+     */
+    private static final class Digits extends Number
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String value;
+
+        Digits(String value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue()
+        {
+            try
+            {
+                return Integer.parseInt(value);
+            }
+            catch (NumberFormatException e)
+            {
+                return (int) longValue();
+            }
+        }
+
+        @Override
+        public long longValue()
+        {
+            try
+            {
+                return Long.parseLong(value);
+            }
+            catch (NumberFormatException e)
+            {
+                return new BigDecimal(value).longValue();
+            }
+        }
+
+        @Override
+        public float floatValue()
+        {
+            return Float.parseFloat(value);
+        }
+
+        @Override
+        public double doubleValue()
+        {
+            return Double.parseDouble(value);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Digits && ((Digits) obj).value.equals(value);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return value.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return value;
+        }
+    }
+}
@@ -18,6 +18,14 @@
  */
 package fr.litarvan.commons.config;
 
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.apache.commons.lang3.ArrayUtils;
 import org.jetbrains.annotations.Nullable;
 
@@ -45,7 +53,12 @@ public interface Config
     String get(String key, String def);
 
     /**
-     * Get a value of the config as an object
+     * Get a value of the config as an object.<br><br>
+     *
+     * Configs may cache the decoded immutable objects, like strings
+     * or numbers (see {@link ValueCache}) : the same object is then
+     * returned by the next calls, until the value changes. Mutable
+     * objects are decoded again by every call.
      *
      * @param key The key of the value
      * @param def The default value if not found
@@ -60,6 +73,130 @@ public interface Config
         throw new UnsupportedOperationException("This config does not support object serializing");
     }
 
+    /**
+     * Get a value of the config as an object of a generic type,
+     * like a List&lt;String&gt;
+     *
+     * @param key The key of the value
+     * @param def The default value if not found
+     * @param type The type of the object to return
+     *
+     * @param <T> The type of the object
+     *
+     * @return The found value or the default one if not found
+     */
+    default <T> T get(String key, T def, Type type)
+    {
+        throw new UnsupportedOperationException("This config does not support object serializing");
+    }
+
+    /**
+     * Get a value of the config as an int, without boxing it when
+     * the config supports it
+     *
+     * @param key The key of the value
+     * @param def The default value if not found or not an int
+     *
+     * @return The found value or the default one
+     */
+    default int getInt(String key, int def)
+    {
+        String value = get(key, null);
+
+        if (value == null)
+        {
+            return def;
+        }
+
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return def;
+        }
+    }
+
+    /**
+     * Get a value of the config as a long, without boxing it when
+     * the config supports it
+     *
+     * @param key The key of the value
+     * @param def The default value if not found or not a long
+     *
+     * @return The found value or the default one
+     */
+    default long getLong(String key, long def)
+    {
+        String value = get(key, null);
+
+        if (value == null)
+        {
+            return def;
+        }
+
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return def;
+        }
+    }
+
+    /**
+     * Get a value of the config as a double, without boxing it when
+     * the config supports it
+     *
+     * @param key The key of the value
+     * @param def The default value if not found or not a double
+     *
+     * @return The found value or the default one
+     */
+    default double getDouble(String key, double def)
+    {
+        String value = get(key, null);
+
+        if (value == null)
+        {
+            return def;
+        }
+
+        try
+        {
+            return Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return def;
+        }
+    }
+
+    /**
+     * Get a value of the config as a boolean ('true' or 'false', ignoring
+     * the case), without boxing it when the config supports it
+     *
+     * @param key The key of the value
+     * @param def The default value if not found or not a boolean
+     *
+     * @return The found value or the default one
+     */
+    default boolean getBoolean(String key, boolean def)
+    {
+        String value = get(key, null);
+
+        if (value == null)
+        {
+            return def;
+        }
+
+        value = value.trim();
+
+        return "true".equalsIgnoreCase(value) || (def && !"false".equalsIgnoreCase(value));
+    }
+
     /**
      * Set a value of the config
      *
@@ -165,7 +302,10 @@ public interface Config
      * }
      * </pre>
      *
-     * config.at("object.key") returns "value"
+     * config.at("object.key") returns "value"<br><br>
+     *
+     * The returned object may be shared with the other callers, see
+     * {@link #get(String, Object, Class)}.
      *
      * @param path The path of the value to get (example config.object.key)
      * @param def The default value if not found
@@ -180,6 +320,39 @@ public interface Config
         return get(path, def, type);
     }
 
+    /**
+     * Finds a value with the given path, as an object of a generic
+     * type, like a List&lt;String&gt;. See {@link #at(String, Object, Class)}.
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param type The type of the object to return
+     *
+     * @param <T> The type of the object
+     *
+     * @return The value at the given path or null if not found
+     */
+    default <T> T at(String path, Type type)
+    {
+        return at(path, null, type);
+    }
+
+    /**
+     * Finds a value with the given path, as an object of a generic
+     * type, like a List&lt;String&gt;. See {@link #at(String, Object, Class)}.
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found
+     * @param type The type of the object to return
+     *
+     * @param <T> The type of the object
+     *
+     * @return The value at the given path or the default if not found
+     */
+    default <T> T at(String path, T def, Type type)
+    {
+        return get(path, def, type);
+    }
+
     /**
      * Finds a value with the given path.<br><br>
      *
@@ -208,6 +381,128 @@ public interface Config
         return at(path, (String) null);
     }
 
+    /**
+     * Check if there is a value at the given path (see {@link #at(String)}),
+     * of any type
+     *
+     * @param path The path of the value (example config.object.key)
+     *
+     * @return If there is a non-null value at this path
+     */
+    default boolean has(String path)
+    {
+        return at(path) != null;
+    }
+
+    /**
+     * Finds a value with the given path (see {@link #at(String)}) as an int,
+     * without boxing it when the config supports it
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found or not an int
+     *
+     * @return The value at the given path or the default one
+     */
+    default int atInt(String path, int def)
+    {
+        return getInt(path, def);
+    }
+
+    /**
+     * Finds a value with the given path (see {@link #at(String)}) as a long,
+     * without boxing it when the config supports it
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found or not a long
+     *
+     * @return The value at the given path or the default one
+     */
+    default long atLong(String path, long def)
+    {
+        return getLong(path, def);
+    }
+
+    /**
+     * Finds a value with the given path (see {@link #at(String)}) as a double,
+     * without boxing it when the config supports it
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found or not a double
+     *
+     * @return The value at the given path or the default one
+     */
+    default double atDouble(String path, double def)
+    {
+        return getDouble(path, def);
+    }
+
+    /**
+     * Finds a value with the given path (see {@link #at(String)}) as a boolean,
+     * without boxing it when the config supports it
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found or not a boolean
+     *
+     * @return The value at the given path or the default one
+     */
+    default boolean atBoolean(String path, boolean def)
+    {
+        return getBoolean(path, def);
+    }
+
+    /**
+     * List the keys of the values of the config starting with a prefix,
+     * in order. For the configs supporting objects, these are the paths
+     * of the values that aren't objects (see {@link #at(String)}).<br><br>
+     *
+     * Keys are kept in an ordered index, so listing them takes a time
+     * depending on the number of keys found, not on the size of the config.
+     *
+     * Example :
+     * <pre>
+     *     config.keys("tenants"); // [tenants.a.name, tenants.a.quota, tenants.b.name]
+     * </pre>
+     *
+     * @param prefix The prefix : the key itself, or the path of an object containing the keys, empty for every key
+     *
+     * @return A sorted copy of the keys equal to the prefix, or starting with 'prefix.'
+     */
+    default SortedSet<String> keys(String prefix)
+    {
+        throw new UnsupportedOperationException("This config can't list its keys");
+    }
+
+    /**
+     * List the values of the config whose key start with a
+     * prefix (see {@link #keys(String)}), as strings
+     *
+     * @param prefix The prefix, empty for every key
+     *
+     * @return The keys and their values, in the order of the keys
+     */
+    default Map<String, String> entries(String prefix)
+    {
+        Map<String, String> entries = new LinkedHashMap<>();
+        forEach(prefix, entries::put);
+
+        return entries;
+    }
+
+    /**
+     * Call a consumer with each value of the config whose key start
+     * with a prefix (see {@link #keys(String)}), as strings
+     *
+     * @param prefix The prefix, empty for every key
+     * @param consumer The consumer of the keys and their values, in the order of the keys
+     */
+    default void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        for (String key : keys(prefix))
+        {
+            consumer.accept(key, at(key));
+        }
+    }
+
     /**
      * Append an object to an array of the config
      *
@@ -219,12 +514,134 @@ public interface Config
      *
      * @return The new array
      */
+    @SuppressWarnings("unchecked")
     default <T> T[] append(String field, Class<T[]> classOfArray, T toAppend)
     {
-        T[] array = ArrayUtils.add(at(field, classOfArray), toAppend);
-        set(field, array);
+        Object[][] result = new Object[1][];
+
+        edit(config -> {
+            T[] array = ArrayUtils.add(config.at(field, classOfArray), toAppend);
+            config.set(field, array);
+
+            result[0] = array;
+        });
+
+        return (T[]) result[0];
+    }
+
+    /**
+     * Append an object to an array of the config, without
+     * returning the new array
+     *
+     * @param field The path (see {@link #at(String)}) of the array
+     * @param toAppend The object to append
+     */
+    default void append(String field, Object toAppend)
+    {
+        throw new UnsupportedOperationException("This config does not support object serializing");
+    }
+
+    /**
+     * Append several objects to an array of the config at once
+     *
+     * @param field The path (see {@link #at(String)}) of the array
+     * @param toAppend The objects to append
+     */
+    default void appendAll(String field, Collection<?> toAppend)
+    {
+        throw new UnsupportedOperationException("This config does not support object serializing");
+    }
+
+    /**
+     * Make several changes on the config as a whole.<br>
+     * If the config can be saved, it is saved only once,
+     * after all the changes were made.
+     *
+     * Example :
+     * <pre>
+     *     config.edit(c -&gt; {
+     *         c.set("server.host", "localhost");
+     *         c.set("server.port", 8080);
+     *     });
+     * </pre>
+     *
+     * @param edition The changes to make on the config
+     *
+     * @return This
+     */
+    default Config edit(Consumer<Config> edition)
+    {
+        edition.accept(this);
+        return this;
+    }
+
+    /**
+     * Listen to the changes of a path of the config, and of its
+     * children. Listeners are called when a value is set, and when
+     * the config is loaded or reloaded, with the previous and new
+     * values (see {@link ConfigListener}).<br><br>
+     *
+     * Example :
+     * <pre>
+     *     config.onChange("server.pool", (path, previous, value) -&gt; pool.resize());
+     * </pre>
+     *
+     * @param path The path to listen to, empty to listen to the whole config
+     * @param listener The listener to call
+     *
+     * @return This
+     */
+    default Config onChange(String path, ConfigListener listener)
+    {
+        throw new UnsupportedOperationException("This config does not support listeners");
+    }
+
+    /**
+     * Remove a listener from every path it listens to
+     *
+     * @param listener The listener to remove
+     *
+     * @return This
+     */
+    default Config removeListener(ConfigListener listener)
+    {
+        throw new UnsupportedOperationException("This config does not support listeners");
+    }
 
-        return array;
+    /**
+     * Compute a value from the config, computed again only when
+     * one of the paths it was computed from changes (see {@link Derived}).<br><br>
+     *
+     * Example :
+     * <pre>
+     *     Derived&lt;Pattern&gt; filter = config.derive("filter", c -&gt; Pattern.compile(c.at("filter.regex")));
+     *     filter.get().matcher(input); // Compiled once per change of 'filter.regex'
+     * </pre>
+     *
+     * The value listens to the changes of the config until it is
+     * closed (see {@link Derived#close()}).
+     *
+     * @param name The name of the value
+     * @param function The function computing the value, only reading the config it is given
+     *
+     * @param <T> The type of the value
+     *
+     * @return The handle of the value
+     */
+    default <T> Derived<T> derive(String name, Function<Config, T> function)
+    {
+        return new Derived<>(this, name, function);
+    }
+
+    /**
+     * Make an immutable copy of the config, faster to read, for
+     * configs that don't change anymore (see {@link FrozenConfig}).
+     *
+     * @return The frozen copy of the config
+     */
+    default FrozenConfig freeze()
+    {
+        throw new UnsupportedOperationException("This config can't be frozen");
     }
 
     /**
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * The Config Binding<br><br>
+ *
+ *
+ * Implements an interface whose methods read the values of a
+ * config, see {@link ConfigProvider#bind(String, Class)}.<br><br>
+ *
+ * A class implementing the interface is generated once per interface.
+ * Its methods returning primitives directly call the primitive getters
+ * of the config (like {@link Config#atInt(String, int)}), so reading
+ * them boxes nothing. The other methods call a reader resolved when
+ * binding, which reads the value with a single lookup. Getters of the
+ * config keep the decoded values cached until they change.<br><br>
+ *
+ * Interfaces that can't be implemented from another class loader,
+ * because they or one of their return types aren't public, are
+ * implemented by a proxy calling the same readers. So are all the
+ * interfaces if ASM, which generates the classes, isn't in the
+ * classpath.<br><br>
+ *
+ * Static methods of the interface are ignored, and so are the
+ * methods of {@link Object} it declares : toString() returns the
+ * name of the interface and the bound path, equals() and hashCode()
+ * compare the instances. Missing values of primitive types are 0
+ * (false, '\0').
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class ConfigBinding implements InvocationHandler
+{
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>()
+    {
+        @Override
+        protected Binding computeValue(Class<?> type)
+        {
+            return new Binding(type);
+        }
+    };
+
+    private final Config config;
+    private final String name;
+    private final Map<Method, Function<Config, Object>> readers = new HashMap<>();
+
+    private ConfigBinding(Config config, String name, Method[] methods, Function<Config, Object>[] readers)
+    {
+        this.config = config;
+        this.name = name;
+
+        for (int i = 0; i < methods.length; i++)
+        {
+            this.readers.put(methods[i], readers[i]);
+        }
+    }
+
+    /**
+     * Bind an interface to a config
+     *
+     * @param config The config to read the values from
+     * @param prefix The path of the object containing the values, empty for the whole config
+     * @param type The interface to implement
+     *
+     * @param <T> The type of the interface
+     *
+     * @return The implementation of the interface
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T> T bind(Config config, String prefix, Class<T> type)
+    {
+        if (!type.isInterface())
+        {
+            throw new IllegalArgumentException("Can't bind " + type.getName() + ", it isn't an interface");
+        }
+
+        Binding binding = BINDINGS.get(type);
+        Method[] methods = binding.methods;
+
+        String[] paths = new String[methods.length];
+        Function<Config, Object>[] readers = new Function[methods.length];
+
+        for (int i = 0; i < methods.length; i++)
+        {
+            paths[i] = prefix.isEmpty() ? methods[i].getName() : prefix + "." + methods[i].getName();
+            readers[i] = reader(config, paths[i], methods[i].getReturnType(), methods[i].getGenericReturnType());
+        }
+
+        String name = type.getSimpleName() + "(" + (prefix.isEmpty() ? "<root>" : prefix) + ")";
+
+        if (binding.generated == null)
+        {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new ConfigBinding(config, name, methods, readers)));
+        }
+
+        try
+        {
+            return type.cast(binding.generated.newInstance(config, paths, readers, name));
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e)
+        {
+            throw new RuntimeException("Can't bind " + type.getName(), e);
+        }
+    }
+
+    /**
+     * @return The read of the value at the given path, as the given type
+     */
+    private static Function<Config, Object> reader(Config config, String path, Class<?> type, java.lang.reflect.Type generic)
+    {
+        if (type == int.class)
+        {
+            return c -> c.atInt(path, 0);
+        }
+        else if (type == long.class)
+        {
+            return c -> c.atLong(path, 0);
+        }
+        else if (type == double.class)
+        {
+            return c -> c.atDouble(path, 0);
+        }
+        else if (type == boolean.class)
+        {
+            return c -> c.atBoolean(path, false);
+        }
+        else if (type == float.class)
+        {
+            return c -> (float) c.atDouble(path, 0);
+        }
+        else if (type == short.class)
+        {
+            return c -> (short) c.atInt(path, 0);
+        }
+        else if (type == byte.class)
+        {
+            return c -> (byte) c.atInt(path, 0);
+        }
+        else if (type == char.class)
+        {
+            return c -> charValue(c.at(path));
+        }
+        else if (type == Integer.class)
+        {
+            return c -> parse(c.at(path), Integer::valueOf);
+        }
+        else if (type == Long.class)
+        {
+            return c -> parse(c.at(path), Long::valueOf);
+        }
+        else if (type == Double.class)
+        {
+            return c -> parse(c.at(path), Double::valueOf);
+        }
+        else if (type == Boolean.class)
+        {
+            return c -> parse(c.at(path), ConfigBinding::booleanValue);
+        }
+        else if (type == String.class)
+        {
+            return c -> c.at(path);
+        }
+        else if (type.isEnum() && !config.areObjectsSupported())
+        {
+            return c -> {
+                String value = c.at(path);
+                return value == null ? null : enumValue(type, value.trim());
+            };
+        }
+        else if (!config.areObjectsSupported() || type == void.class)
+        {
+            throw new IllegalArgumentException("Can't bind " + path + ", the config can't read a " + type.getName());
+        }
+
+        return c -> c.at(path, null, generic);
+    }
+
+    /**
+     * @return The parsed value, or null if there isn't any or it can't be parsed
+     */
+    private static Object parse(String value, Function<String, Object> parser)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return parser.apply(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return The only character of the value, or '\0' if there isn't
+     *         one, like the other primitives default to 0
+     */
+    private static Object charValue(String value)
+    {
+        return value != null && value.length() == 1 ? value.charAt(0) : '\0';
+    }
+
+    private static Object booleanValue(String value)
+    {
+        if ("true".equalsIgnoreCase(value))
+        {
+            return Boolean.TRUE;
+        }
+
+        return "false".equalsIgnoreCase(value) ? Boolean.FALSE : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> Object enumValue(Class<?> type, String value)
+    {
+        return Enum.valueOf((Class<E>) type, value);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    {
+        Function<Config, Object> reader = readers.get(method);
+
+        if (reader != null)
+        {
+            return reader.apply(config);
+        }
+
+        switch (method.getName())
+        {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return name;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    /**
+     * The methods of a bound interface, and the class generated to
+     * implement it (null if it can't be generated)
+     */
+    private static final class Binding
+    {
+        final Method[] methods;
+        final Constructor<?> generated;
+
+        Binding(Class<?> type)
+        {
+            List<Method> methods = new ArrayList<>();
+            boolean accessible = isPublic(type) && type.getClassLoader() != null;
+
+            for (Method method : type.getMethods())
+            {
+                // Static methods aren't implemented, and the ones of Object keep their own implementation
+                if (Modifier.isStatic(method.getModifiers()) || isObjectMethod(method))
+                {
+                    continue;
+                }
+
+                if (!Modifier.isAbstract(method.getModifiers()))
+                {
+                    throw new IllegalArgumentException("Can't bind " + type.getName() + ", " + method.getName() + "() isn't abstract");
+                }
+
+                if (method.getParameterCount() != 0)
+                {
+                    throw new IllegalArgumentException("Can't bind " + type.getName() + ", " + method.getName() + "() takes parameters");
+                }
+
+                accessible &= isPublic(method.getReturnType());
+                methods.add(method);
+            }
+
+            this.methods = methods.toArray(new Method[methods.size()]);
+            this.generated = accessible ? generate(type, this.methods) : null;
+        }
+
+        private static Constructor<?> generate(Class<?> type, Method[] methods)
+        {
+            try
+            {
+                return Generator.generate(type, methods);
+            }
+            catch (NoClassDefFoundError e)
+            {
+                // ASM isn't in the classpath
+                return null;
+            }
+        }
+
+        private static boolean isObjectMethod(Method method)
+        {
+            try
+            {
+                Object.class.getMethod(method.getName(), method.getParameterTypes());
+                return true;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        }
+
+        private static boolean isPublic(Class<?> type)
+        {
+            while (type.isArray())
+            {
+                type = type.getComponentType();
+            }
+
+            for (Class<?> c = type; c != null; c = c.getEnclosingClass())
+            {
+                if (!c.isPrimitive() && !Modifier.isPublic(c.getModifiers()))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Generates the classes implementing the bound interfaces, the
+     * only user of ASM, so bindings fall back to proxies without it
+     */
+    private static final class Generator
+    {
+        private static final String CONFIG = Type.getInternalName(Config.class);
+        private static final String FUNCTION = Type.getInternalName(Function.class);
+
+        /**
+         * Generate a class implementing the given interface, whose
+         * constructor takes the config, the path and the reader of
+         * each method (in the given order), and its name
+         */
+        private static Constructor<?> generate(Class<?> type, Method[] methods)
+        {
+            String name = type.getName() + "$ConfigBinding";
+            String internal = name.replace('.', '/');
+
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internal, null, "java/lang/Object", new String[]{Type.getInternalName(type)});
+
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "config", "L" + CONFIG + ";", null, null).visitEnd();
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "paths", "[Ljava/lang/String;", null, null).visitEnd();
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "readers", "[L" + FUNCTION + ";", null, null).visitEnd();
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "name", "Ljava/lang/String;", null, null).visitEnd();
+
+            MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + CONFIG + ";[Ljava/lang/String;[L" + FUNCTION + ";Ljava/lang/String;)V", null, null);
+            init.visitCode();
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            store(init, internal, 1, "config", "L" + CONFIG + ";");
+            store(init, internal, 2, "paths", "[Ljava/lang/String;");
+            store(init, internal, 3, "readers", "[L" + FUNCTION + ";");
+            store(init, internal, 4, "name", "Ljava/lang/String;");
+            init.visitInsn(Opcodes.RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            for (int i = 0; i < methods.length; i++)
+            {
+                Class<?> returned = methods[i].getReturnType();
+                MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, methods[i].getName(), Type.getMethodDescriptor(methods[i]), null, null);
+
+                method.visitCode();
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+
+                if (!primitive(method, internal, i, returned))
+                {
+                    // this.readers[i].apply(this.config)
+                    method.visitFieldInsn(Opcodes.GETFIELD, internal, "readers", "[L" + FUNCTION + ";");
+                    push(method, i);
+                    method.visitInsn(Opcodes.AALOAD);
+                    method.visitVarInsn(Opcodes.ALOAD, 0);
+                    method.visitFieldInsn(Opcodes.GETFIELD, internal, "config", "L" + CONFIG + ";");
+                    method.visitMethodInsn(Opcodes.INVOKEINTERFACE, FUNCTION, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+                    unbox(method, returned);
+                }
+
+                method.visitMaxs(0, 0);
+                method.visitEnd();
+            }
+
+            MethodVisitor toString = writer.visitMethod(Opcodes.ACC_PUBLIC, "toString", "()Ljava/lang/String;", null, null);
+            toString.visitCode();
+            toString.visitVarInsn(Opcodes.ALOAD, 0);
+            toString.visitFieldInsn(Opcodes.GETFIELD, internal, "name", "Ljava/lang/String;");
+            toString.visitInsn(Opcodes.ARETURN);
+            toString.visitMaxs(0, 0);
+            toString.visitEnd();
+
+            writer.visitEnd();
+
+            try
+            {
+                return new Loader(type.getClassLoader()).define(name, writer.toByteArray()).getConstructor(Config.class, String[].class, Function[].class, String.class);
+            }
+            catch (NoSuchMethodException | LinkageError e)
+            {
+                throw new RuntimeException("Can't generate the binding of " + type.getName(), e);
+            }
+        }
+
+        private static void store(MethodVisitor method, String owner, int parameter, String field, String descriptor)
+        {
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitVarInsn(Opcodes.ALOAD, parameter);
+            method.visitFieldInsn(Opcodes.PUTFIELD, owner, field, descriptor);
+        }
+
+        /**
+         * Write the direct call of the primitive getter returning the given
+         * type, and its return, if there is one
+         *
+         * @return If the call was written
+         */
+        private static boolean primitive(MethodVisitor method, String owner, int index, Class<?> type)
+        {
+            String getter;
+            String descriptor;
+
+            if (type == int.class || type == short.class || type == byte.class)
+            {
+                getter = "atInt";
+                descriptor = "(Ljava/lang/String;I)I";
+            }
+            else if (type == long.class)
+            {
+                getter = "atLong";
+                descriptor = "(Ljava/lang/String;J)J";
+            }
+            else if (type == double.class || type == float.class)
+            {
+                getter = "atDouble";
+                descriptor = "(Ljava/lang/String;D)D";
+            }
+            else if (type == boolean.class)
+            {
+                getter = "atBoolean";
+                descriptor = "(Ljava/lang/String;Z)Z";
+            }
+            else
+            {
+                return false;
+            }
+
+            // this.config.atX(this.paths[index], 0)
+            method.visitFieldInsn(Opcodes.GETFIELD, owner, "config", "L" + CONFIG + ";");
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitFieldInsn(Opcodes.GETFIELD, owner, "paths", "[Ljava/lang/String;");
+            push(method, index);
+            method.visitInsn(Opcodes.AALOAD);
+            method.visitInsn(type == long.class ? Opcodes.LCONST_0 : type == double.class || type == float.class ? Opcodes.DCONST_0 : Opcodes.ICONST_0);
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, CONFIG, getter, descriptor, true);
+
+            if (type == short.class)
+            {
+                method.visitInsn(Opcodes.I2S);
+            }
+            else if (type == byte.class)
+            {
+                method.visitInsn(Opcodes.I2B);
+            }
+            else if (type == float.class)
+            {
+                method.visitInsn(Opcodes.D2F);
+            }
+
+            method.visitInsn(Type.getType(type).getOpcode(Opcodes.IRETURN));
+            return true;
+        }
+
+        /**
+         * Write the cast of the object returned by a reader to the given
+         * type, and its return
+         */
+        private static void unbox(MethodVisitor method, Class<?> type)
+        {
+            if (!type.isPrimitive())
+            {
+                method.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+                method.visitInsn(Opcodes.ARETURN);
+
+                return;
+            }
+
+            // Only char is left, other primitives are read directly
+            method.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/Character");
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Character", "charValue", "()C", false);
+            method.visitInsn(Opcodes.IRETURN);
+        }
+
+        private static void push(MethodVisitor method, int value)
+        {
+            if (value <= 5)
+            {
+                method.visitInsn(Opcodes.ICONST_0 + value);
+            }
+            else if (value <= Byte.MAX_VALUE)
+            {
+                method.visitIntInsn(Opcodes.BIPUSH, value);
+            }
+            else
+            {
+                method.visitIntInsn(Opcodes.SIPUSH, value);
+            }
+        }
+    }
+
+    /**
+     * Defines a generated class, next to the bound interface
+     */
+    private static final class Loader extends ClassLoader
+    {
+        Loader(ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes)
+        {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The Config Listener<br><br>
+ *
+ *
+ * Listens to the changes of a path of a config, see
+ * {@link Config#onChange(String, ConfigListener)}.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@FunctionalInterface
+public interface ConfigListener
+{
+    /**
+     * Called when a value changed.<br><br>
+     *
+     * The values are the raw values of the config : a JsonElement
+     * for a {@link JSONConfig}, a String for the other configs.
+     * They must not be modified. Listeners called asynchronously
+     * receive copies, that the next changes of the config don't
+     * modify while they read them.
+     *
+     * @param path The path of the value that changed
+     * @param previous The previous value, or null if there was none
+     * @param value The new value, or null if it was removed
+     */
+    void onChange(String path, @Nullable Object previous, @Nullable Object value);
+}
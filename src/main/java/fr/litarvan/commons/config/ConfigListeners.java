@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The Config Listeners<br><br>
+ *
+ *
+ * The listeners of a config, stored in a tree of the path
+ * segments they listen to, so a change only visits the listeners
+ * of its path, of its parents and of its children.<br><br>
+ *
+ * Listeners are called by an executor, by default a single thread
+ * shared by every config, calling them in the order of the changes.
+ * {@link Synchronous} listeners are called by the thread making the
+ * change instead, before it returns. An exception thrown by a
+ * listener is given to the uncaught exception handler of the thread
+ * calling it, and the next listeners are still called.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class ConfigListeners
+{
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Config listeners");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final Node root = new Node();
+    private volatile Executor executor = DEFAULT_EXECUTOR;
+    private volatile int count;
+
+    /**
+     * @param path The path to listen to, empty for the whole config
+     * @param listener The listener to add
+     */
+    synchronized void add(String path, ConfigListener listener)
+    {
+        Node node = root;
+
+        if (!path.isEmpty())
+        {
+            for (String segment : path.split("\\."))
+            {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+
+        node.listeners.add(listener);
+        count++;
+    }
+
+    /**
+     * @param listener The listener to remove from every path it listens to
+     */
+    synchronized void remove(ConfigListener listener)
+    {
+        count -= remove(root, listener);
+    }
+
+    private static int remove(Node node, ConfigListener listener)
+    {
+        int removed = 0;
+
+        while (node.listeners.remove(listener))
+        {
+            removed++;
+        }
+
+        for (Map.Entry<String, Node> child : node.children.entrySet())
+        {
+            removed += remove(child.getValue(), listener);
+
+            if (child.getValue().listeners.isEmpty() && child.getValue().children.isEmpty())
+            {
+                node.children.remove(child.getKey());
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * @return If there isn't any listener, in which case the
+     *         previous values don't need to be kept
+     */
+    boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    /**
+     * @param executor The executor calling the listeners
+     */
+    void executor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Notify the listeners of the path, of its parents and of its
+     * children. Children listeners are notified with the values at
+     * their own path, only if they changed.
+     *
+     * @param path The path that changed, empty for the whole config
+     * @param previous The previous value
+     * @param value The new value
+     * @param children Finds a child of a value, or null if values don't have children
+     */
+    void fire(String path, Object previous, Object value, Children children)
+    {
+        fire(path, previous, value, children, null);
+    }
+
+    /**
+     * Notify the listeners of a change (see {@link #fire(String, Object, Object, Children)}),
+     * copying the values given to the listeners called later, when
+     * the values can be modified by the next changes
+     *
+     * @param path The path that changed, empty for the whole config
+     * @param previous The previous value
+     * @param value The new value
+     * @param children Finds a child of a value, or null if values don't have children
+     * @param copier Copies the values given to the asynchronous listeners, or null if they are immutable
+     */
+    void fire(String path, Object previous, Object value, Children children, Copier copier)
+    {
+        if (count == 0 || Objects.equals(previous, value))
+        {
+            return;
+        }
+
+        Calls calls = new Calls(copier);
+        Node node = root;
+
+        add(calls, node, path, previous, value);
+
+        if (!path.isEmpty())
+        {
+            int start = 0;
+
+            while (node != null && start <= path.length())
+            {
+                int end = path.indexOf('.', start);
+
+                if (end == -1)
+                {
+                    end = path.length();
+                }
+
+                node = node.children.get(path.substring(start, end));
+
+                if (node != null)
+                {
+                    add(calls, node, path, previous, value);
+                }
+
+                start = end + 1;
+            }
+        }
+
+        if (node != null && children != null)
+        {
+            descend(calls, node, path, previous, value, children);
+        }
+
+        calls.now.forEach(ConfigListeners::call);
+
+        if (!calls.later.isEmpty())
+        {
+            executor.execute(() -> calls.later.forEach(ConfigListeners::call));
+        }
+    }
+
+    /**
+     * Call a listener, giving what it throws to the uncaught exception
+     * handler of the thread, so it doesn't prevent the next listeners
+     * from being called
+     */
+    private static void call(Runnable call)
+    {
+        try
+        {
+            call.run();
+        }
+        catch (RuntimeException | Error e)
+        {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static void descend(Calls calls, Node node, String path, Object previous, Object value, Children children)
+    {
+        for (Map.Entry<String, Node> entry : node.children.entrySet())
+        {
+            Object childPrevious = previous == null ? null : children.child(previous, entry.getKey());
+            Object childValue = value == null ? null : children.child(value, entry.getKey());
+
+            if (Objects.equals(childPrevious, childValue))
+            {
+                continue;
+            }
+
+            String childPath = path.isEmpty() ? entry.getKey() : path + "." + entry.getKey();
+
+            add(calls, entry.getValue(), childPath, childPrevious, childValue);
+            descend(calls, entry.getValue(), childPath, childPrevious, childValue, children);
+        }
+    }
+
+    private static void add(Calls calls, Node node, String path, Object previous, Object value)
+    {
+        Object previousCopy = null;
+        Object valueCopy = null;
+        boolean copied = false;
+
+        for (ConfigListener listener : node.listeners)
+        {
+            if (listener instanceof Synchronous)
+            {
+                calls.now.add(() -> listener.onChange(path, previous, value));
+                continue;
+            }
+
+            // Copied once for every asynchronous listener of the path
+            if (!copied)
+            {
+                previousCopy = calls.copy(path, previous);
+                valueCopy = calls.copy(path, value);
+                copied = true;
+            }
+
+            Object listenerPrevious = previousCopy;
+            Object listenerValue = valueCopy;
+
+            calls.later.add(() -> listener.onChange(path, listenerPrevious, listenerValue));
+        }
+    }
+
+    /**
+     * Finds the child of a value
+     */
+    @FunctionalInterface
+    interface Children
+    {
+        /**
+         * @param value The parent value
+         * @param name The name of the child
+         *
+         * @return The child, or null if the value doesn't have it
+         */
+        Object child(Object value, String name);
+    }
+
+    /**
+     * Copies the values given to the asynchronous listeners
+     */
+    @FunctionalInterface
+    interface Copier
+    {
+        /**
+         * Called by the thread making the change, before it returns
+         *
+         * @param path The path of the value
+         * @param value The value to copy, not null
+         *
+         * @return A copy of the value that the next changes of the config won't modify
+         */
+        Object copy(String path, Object value);
+    }
+
+    /**
+     * A listener called by the thread making the change, before it returns,
+     * used to invalidate what was computed from the values of a config.
+     * It must be fast, and must not modify the config.
+     */
+    @FunctionalInterface
+    interface Synchronous extends ConfigListener
+    {
+    }
+
+    private static final class Calls
+    {
+        final List<Runnable> now = new ArrayList<>();
+        final List<Runnable> later = new ArrayList<>();
+        final Copier copier;
+
+        Calls(Copier copier)
+        {
+            this.copier = copier;
+        }
+
+        Object copy(String path, Object value)
+        {
+            return copier == null || value == null ? value : copier.copy(path, value);
+        }
+    }
+
+    private static final class Node
+    {
+        final Map<String, Node> children = new ConcurrentHashMap<>();
+        final List<ConfigListener> listeners = new CopyOnWriteArrayList<>();
+    }
+}
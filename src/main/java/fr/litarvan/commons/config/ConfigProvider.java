@@ -20,6 +20,7 @@ package fr.litarvan.commons.config;
 
 import fr.litarvan.commons.io.IOSource;
 import java.io.File;
+import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
 import javax.inject.Singleton;
@@ -38,6 +39,8 @@ import org.jetbrains.annotations.Nullable;
  *     // Or
  *     provider.properties("config/myconfig.properties");
  *     // Or
+ *     provider.binary(new File("config/mytable.bin"));
+ *     // Or
  *     provider.json("myconfig").in("config/myconfig.json");
  *     // Etc...
  * </pre>
@@ -60,6 +63,15 @@ import org.jetbrains.annotations.Nullable;
  *     // etc...
  * </pre>
  *
+ * <b>Binding an interface :</b>
+ *
+ * <pre>
+ *     interface ServerConf { int port(); String host(); }
+ *
+ *     ServerConf server = provider.bind("myconfig.server", ServerConf.class);
+ *     server.port(); // Same as provider.get("myconfig").atInt("server.port", 0)
+ * </pre>
+ *
  * @author Litarvan
  * @version 1.0.0
  * @since 1.0.0
@@ -68,6 +80,29 @@ import org.jetbrains.annotations.Nullable;
 public class ConfigProvider
 {
     private Map<String, Config> configs = new HashMap<>();
+    private GsonRegistry registry = GsonRegistry.shared();
+
+    /**
+     * Set the registry of the type adapters used by the JSON configs
+     * created from now on. By default it is {@link GsonRegistry#shared()}.
+     *
+     * @param registry The registry to use
+     *
+     * @return This
+     */
+    public ConfigProvider registry(GsonRegistry registry)
+    {
+        this.registry = registry;
+        return this;
+    }
+
+    /**
+     * @return The registry of the type adapters used by the JSON configs
+     */
+    public GsonRegistry getRegistry()
+    {
+        return registry;
+    }
 
     /**
      * Create a config from a file path.<br>
@@ -196,7 +231,7 @@ public class ConfigProvider
      */
     public JSONConfig json(IOSource source, String name)
     {
-        return register(new JSONConfig(source), name);
+        return register(new JSONConfig(source, registry), name);
     }
 
     /**
@@ -237,6 +272,32 @@ public class ConfigProvider
         return register(new PropertiesConfig(file), name);
     }
 
+    /**
+     * Create a binary config from a file.<br>
+     * It names will be the file name without the extension.
+     *
+     * @param file The path of the config file
+     *
+     * @return A {@link BinaryConfig} of this file.
+     */
+    public BinaryConfig binary(File file)
+    {
+        return binary(file, file.getName().substring(0, file.getName().lastIndexOf(".")));
+    }
+
+    /**
+     * Create a binary config from a file with the given name
+     *
+     * @param file The path of the config file
+     * @param name The name of the config
+     *
+     * @return A new {@link BinaryConfig}
+     */
+    public BinaryConfig binary(File file, String name)
+    {
+        return register(new BinaryConfig(file), name);
+    }
+
     /**
      * Register a file config
      *
@@ -394,4 +455,73 @@ public class ConfigProvider
 
         return config == null ? null : config.at(path.substring(index + 1), def, type);
     }
+
+    /**
+     * Finds a value with the given path, as an object of a generic
+     * type, like a List&lt;String&gt;. See {@link #at(String, Object, Class)}.
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param type The type of the object to return
+     *
+     * @param <T> The type of the object
+     *
+     * @return The value at the given path
+     */
+    public <T> T at(String path, Type type)
+    {
+        return at(path, null, type);
+    }
+
+    /**
+     * Finds a value with the given path, as an object of a generic
+     * type, like a List&lt;String&gt;. See {@link #at(String, Object, Class)}.
+     *
+     * @param path The path of the value to get (example config.object.key)
+     * @param def The default value if not found
+     * @param type The type of the object to return
+     *
+     * @param <T> The type of the object
+     *
+     * @return The value at the given path or the default if not found
+     */
+    public <T> T at(String path, T def, Type type)
+    {
+        int index = path.indexOf(".");
+        Config config = get(path.substring(0, index));
+
+        return config == null ? null : config.at(path.substring(index + 1), def, type);
+    }
+
+    /**
+     * Implement an interface whose methods return the values of a
+     * config. Each method without parameter reads the value at the
+     * path made of the given path and of its name : primitives,
+     * strings, and for the configs that support objects, any type.
+     * Missing values are returned as 0, false or null.<br><br>
+     *
+     * The way each method reads its value is resolved once here, and
+     * the values are always the current ones of the config.
+     *
+     * @param path The name of the config, followed by the path of the object containing the values (example myconfig.server)
+     * @param type The interface to implement
+     *
+     * @param <T> The type of the interface
+     *
+     * @return The implementation of the interface
+     *
+     * @throws IllegalArgumentException If the config isn't registered, or if the interface can't be implemented
+     */
+    public <T> T bind(String path, Class<T> type)
+    {
+        int index = path.indexOf(".");
+        String name = index == -1 ? path : path.substring(0, index);
+        Config config = get(name);
+
+        if (config == null)
+        {
+            throw new IllegalArgumentException("Unknown config '" + name + "'");
+        }
+
+        return ConfigBinding.bind(config, index == -1 ? "" : path.substring(index + 1), type);
+    }
 }
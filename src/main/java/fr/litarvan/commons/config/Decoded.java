@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.reflect.Type;
+
+/**
+ * The Decoded Value<br><br>
+ *
+ *
+ * The last object decoded from a value and the type it was decoded
+ * to, kept by the immutable configs (see {@link FrozenConfig} and
+ * {@link PersistentConfig}) to decode a value only once.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class Decoded
+{
+    final Type type;
+    final Object value;
+
+    Decoded(Type type, Object value)
+    {
+        this.type = type;
+        this.value = value;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The Derived value<br><br>
+ *
+ *
+ * A value computed from a config, made by {@link Config#derive(String, Function)}.<br><br>
+ *
+ * The value is computed on the first call of {@link #get()}, and
+ * the paths the function read are remembered. It is then computed
+ * again only after one of these paths changed (set, loaded or
+ * reloaded), once, on the next call of {@link #get()}.<br><br>
+ *
+ * The function must only read the config it is given, which throws
+ * an {@link UnsupportedOperationException} if it is modified. If the
+ * config doesn't support listeners, the value is computed on every call.<br><br>
+ *
+ * A derived value listens to every change of its config until it is
+ * closed, so {@link #close()} should be called once it isn't used
+ * anymore (or try-with-resources used). The listener only holds the
+ * value weakly : a value that is never closed can still be garbage
+ * collected, its listener is then removed on the next change of the
+ * config.
+ *
+ * @param <T> The type of the value
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class Derived<T> implements AutoCloseable
+{
+    private final Config config;
+    private final String name;
+    private final Function<Config, T> function;
+    private final Invalidation invalidation;
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean memoized;
+    private volatile State<T> state;
+    private volatile NavigableSet<String> reading;
+
+    /**
+     * @param config The config to compute the value from
+     * @param name The name of the value
+     * @param function The function computing the value
+     */
+    public Derived(Config config, String name, Function<Config, T> function)
+    {
+        this.config = config;
+        this.name = name;
+        this.function = function;
+        this.invalidation = new Invalidation(config, this);
+
+        boolean memoized = true;
+
+        try
+        {
+            config.onChange("", invalidation);
+        }
+        catch (UnsupportedOperationException e)
+        {
+            memoized = false;
+        }
+
+        this.memoized = memoized;
+    }
+
+    /**
+     * @return The value, computed if it is the first call or if one of the paths it was computed from changed
+     */
+    public T get()
+    {
+        State<T> state = this.state;
+
+        if (memoized && state != null && state.generation == generation.get())
+        {
+            return state.value;
+        }
+
+        synchronized (this)
+        {
+            long generation = this.generation.get();
+            state = this.state;
+
+            if (memoized && state != null && state.generation == generation)
+            {
+                return state.value;
+            }
+
+            NavigableSet<String> paths = new ConcurrentSkipListSet<>();
+            reading = paths;
+
+            try
+            {
+                T value = function.apply(new TrackingConfig(config, paths));
+
+                // If a read path changed while computing, the generation changed and the value will be computed again
+                this.state = new State<>(value, paths, generation);
+
+                return value;
+            }
+            finally
+            {
+                reading = null;
+            }
+        }
+    }
+
+    /**
+     * Force the value to be computed again on the next call of {@link #get()}
+     */
+    public void invalidate()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Stop listening to the config. The value is then computed on
+     * every call of {@link #get()}.
+     */
+    @Override
+    public void close()
+    {
+        if (memoized)
+        {
+            memoized = false;
+            config.removeListener(invalidation);
+        }
+
+        state = null;
+    }
+
+    /**
+     * @return The name of the value
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The paths read by the last computation of the value
+     */
+    public SortedSet<String> getDependencies()
+    {
+        State<T> state = this.state;
+        return state == null ? Collections.emptySortedSet() : Collections.unmodifiableSortedSet(state.paths);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Derived(" + name + ")";
+    }
+
+    /**
+     * @return If a change of the path modifies one of the read paths
+     */
+    private static boolean affects(NavigableSet<String> paths, String path)
+    {
+        // The root was read as a whole, by listing every key
+        if (path.isEmpty() || paths.contains(path) || paths.contains(""))
+        {
+            return true;
+        }
+
+        // One of the parents was read as a whole (an object, or a prefix of keys)
+        int dot = path.indexOf('.');
+        while (dot != -1)
+        {
+            if (paths.contains(path.substring(0, dot)))
+            {
+                return true;
+            }
+
+            dot = path.indexOf('.', dot + 1);
+        }
+
+        // One of the children was read
+        return !paths.subSet(path + ".", true, path + "/", false).isEmpty();
+    }
+
+    /**
+     * Invalidates the value when one of its paths changed, before the
+     * change returns. Holds the value weakly, so the config doesn't
+     * keep it alive, and removes itself once it was collected.
+     */
+    private static final class Invalidation implements ConfigListeners.Synchronous
+    {
+        private final Config config;
+        private final WeakReference<Derived<?>> derived;
+
+        Invalidation(Config config, Derived<?> derived)
+        {
+            this.config = config;
+            this.derived = new WeakReference<>(derived);
+        }
+
+        @Override
+        public void onChange(String path, Object previous, Object value)
+        {
+            Derived<?> derived = this.derived.get();
+
+            if (derived == null)
+            {
+                config.removeListener(this);
+                return;
+            }
+
+            State<?> state = derived.state;
+            NavigableSet<String> reading = derived.reading;
+
+            if ((state != null && affects(state.paths, path)) || (reading != null && affects(reading, path)))
+            {
+                derived.generation.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class State<T>
+    {
+        final T value;
+        final NavigableSet<String> paths;
+        final long generation;
+
+        State(T value, NavigableSet<String> paths, long generation)
+        {
+            this.value = value;
+            this.paths = paths;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Feature Flags<br><br>
+ *
+ *
+ * Feature flags defined in a section of a config, compiled once
+ * into immutable evaluators. Each flag is either a boolean, or an
+ * object with these optional fields :
+ *
+ * <pre>
+ * "flags": {
+ *     "new-ui": true,
+ *     "beta": {
+ *         "enabled": true,     // false disables the flag for everyone, true by default
+ *         "rollout": 25,       // Percentage (0 to 100) of the users having the flag, 100 by default
+ *         "users": [12, 42],   // Users always having the flag (if enabled)
+ *         "salt": "beta"       // Changes the users of the rollout, the flag name by default
+ *     }
+ * }
+ * </pre>
+ *
+ * The users of a rollout are chosen by hashing their id with the
+ * salt : raising the percentage only adds users, and a user keeps
+ * the same state as long as the salt doesn't change. Numeric user
+ * ids and string ones are hashed differently.<br><br>
+ *
+ * When the section changes, the flags are only marked as stale,
+ * and compiled again by the next evaluation, so a batch of changes
+ * (like the reload of a config firing one change per key) compiles
+ * them once. Other evaluations don't lock nor allocate anything. If
+ * the changed flags are malformed, the previous ones are kept and the
+ * error is given to the uncaught exception handler of the evaluating
+ * thread.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class FeatureFlags
+{
+    private static final int SCALE = 10000;
+
+    private final Config config;
+    private final String section;
+    private final Recompile recompile = new Recompile();
+    private final boolean listening;
+
+    private volatile Map<String, Flag> flags;
+    private volatile boolean stale;
+
+    /**
+     * Compile the flags of a config section
+     *
+     * @param config The config containing the flags
+     * @param section The path of the section defining the flags
+     *
+     * @throws IllegalArgumentException If a flag is malformed
+     */
+    public FeatureFlags(Config config, String section)
+    {
+        this.config = config;
+        this.section = section;
+        this.flags = compile(config, section);
+
+        boolean listening = true;
+
+        try
+        {
+            config.onChange(section, recompile);
+        }
+        catch (UnsupportedOperationException e)
+        {
+            listening = false;
+        }
+
+        this.listening = listening;
+    }
+
+    /**
+     * @param flag The name of the flag
+     *
+     * @return If the flag is enabled for everyone
+     */
+    public boolean isEnabled(String flag)
+    {
+        Flag compiled = flags().get(flag);
+        return compiled != null && compiled.enabled && compiled.rollout >= SCALE;
+    }
+
+    /**
+     * @param flag The name of the flag
+     * @param user The id of the user
+     *
+     * @return If the flag is enabled for the user
+     */
+    public boolean isEnabled(String flag, long user)
+    {
+        Flag compiled = flags().get(flag);
+
+        if (compiled == null || !compiled.enabled)
+        {
+            return false;
+        }
+
+        return compiled.users.contains(user) || bucket(user, compiled.salt) < compiled.rollout;
+    }
+
+    /**
+     * @param flag The name of the flag
+     * @param user The id of the user
+     *
+     * @return If the flag is enabled for the user
+     */
+    public boolean isEnabled(String flag, String user)
+    {
+        Flag compiled = flags().get(flag);
+
+        if (compiled == null || !compiled.enabled)
+        {
+            return false;
+        }
+
+        return compiled.names.contains(user) || bucket(user.hashCode(), ~compiled.salt) < compiled.rollout;
+    }
+
+    /**
+     * @return The names of the defined flags
+     */
+    public Set<String> getFlags()
+    {
+        return flags().keySet();
+    }
+
+    /**
+     * Compile the flags again. Only needed if the config doesn't
+     * support listeners, the flags are compiled again when they
+     * change otherwise.
+     *
+     * @throws IllegalArgumentException If a flag is malformed
+     */
+    public void refresh()
+    {
+        stale = false;
+        flags = compile(config, section);
+    }
+
+    /**
+     * Stop following the changes of the config
+     */
+    public void close()
+    {
+        if (listening)
+        {
+            config.removeListener(recompile);
+        }
+    }
+
+    /**
+     * @return The flags, compiled again first if they changed, keeping
+     *         the previous ones if the new ones are malformed (the error
+     *         is then given to the uncaught exception handler of the thread)
+     */
+    private Map<String, Flag> flags()
+    {
+        if (stale)
+        {
+            synchronized (this)
+            {
+                if (stale)
+                {
+                    // Cleared first, so a change made while compiling marks them again
+                    stale = false;
+
+                    try
+                    {
+                        flags = compile(config, section);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        // An invalid change of the flags must not fail their evaluation
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+            }
+        }
+
+        return flags;
+    }
+
+    private static int bucket(long id, long salt)
+    {
+        long hash = id ^ salt;
+
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return (int) ((hash >>> 1) % SCALE);
+    }
+
+    private static Map<String, Flag> compile(Config config, String section)
+    {
+        Map<String, Map<String, String>> fields = new LinkedHashMap<>();
+        int start = section.length() + 1;
+
+        config.forEach(section, (key, value) -> {
+            if (key.length() < start)
+            {
+                throw new IllegalArgumentException("'" + section + "' isn't a section of flags");
+            }
+
+            int dot = key.indexOf('.', start);
+            String name = dot == -1 ? key.substring(start) : key.substring(start, dot);
+
+            fields.computeIfAbsent(name, n -> new HashMap<>()).put(dot == -1 ? "" : key.substring(dot + 1), value);
+        });
+
+        Map<String, Flag> flags = new HashMap<>(fields.size() * 2);
+        fields.forEach((name, flag) -> flags.put(name, flag(name, flag)));
+
+        return Collections.unmodifiableMap(flags);
+    }
+
+    private static Flag flag(String name, Map<String, String> fields)
+    {
+        String value = fields.get("");
+
+        if (value != null)
+        {
+            return new Flag(bool(name, value), SCALE, name.hashCode(), new ArrayList<>());
+        }
+
+        boolean enabled = !fields.containsKey("enabled") || bool(name, fields.get("enabled"));
+        int rollout = SCALE;
+        String rolloutValue = fields.get("rollout");
+
+        if (rolloutValue != null)
+        {
+            double percentage;
+
+            try
+            {
+                percentage = Double.parseDouble(rolloutValue.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Rollout of flag '" + name + "' isn't a percentage : " + rolloutValue);
+            }
+
+            if (!(percentage >= 0 && percentage <= 100))
+            {
+                throw new IllegalArgumentException("Rollout of flag '" + name + "' isn't between 0 and 100 : " + rolloutValue);
+            }
+
+            rollout = (int) Math.round(percentage * SCALE / 100);
+        }
+
+        String salt = fields.getOrDefault("salt", name);
+        String users = fields.get("users");
+
+        return new Flag(enabled, rollout, salt.hashCode(), users == null ? new ArrayList<>() : list(name, users));
+    }
+
+    private static boolean bool(String name, String value)
+    {
+        if (!"true".equalsIgnoreCase(value.trim()) && !"false".equalsIgnoreCase(value.trim()))
+        {
+            throw new IllegalArgumentException("Flag '" + name + "' isn't a boolean : " + value);
+        }
+
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Read a list of users, written as a JSON array or, in properties,
+     * separated by commas
+     */
+    private static List<String> list(String name, String value)
+    {
+        String content = value.trim();
+        List<String> users = new ArrayList<>();
+
+        if (content.startsWith("["))
+        {
+            JsonElement array;
+
+            try
+            {
+                array = new JsonParser().parse(content);
+            }
+            catch (JsonParseException e)
+            {
+                throw new IllegalArgumentException("Users of flag '" + name + "' aren't a valid array : " + value, e);
+            }
+
+            if (!array.isJsonArray())
+            {
+                throw new IllegalArgumentException("Users of flag '" + name + "' aren't an array : " + value);
+            }
+
+            for (JsonElement user : array.getAsJsonArray())
+            {
+                if (!user.isJsonPrimitive())
+                {
+                    throw new IllegalArgumentException("User of flag '" + name + "' isn't a number or a string : " + user);
+                }
+
+                users.add(user.getAsString());
+            }
+
+            return users;
+        }
+
+        for (String user : content.split(","))
+        {
+            user = user.trim();
+
+            if (!user.isEmpty())
+            {
+                users.add(user);
+            }
+        }
+
+        return users;
+    }
+
+    /**
+     * Marks the flags as stale when their section changes
+     */
+    private final class Recompile implements ConfigListeners.Synchronous
+    {
+        @Override
+        public void onChange(String path, Object previous, Object value)
+        {
+            stale = true;
+        }
+    }
+
+    /**
+     * A compiled flag
+     */
+    private static final class Flag
+    {
+        final boolean enabled;
+        final int rollout;
+        final long salt;
+        final LongSet users;
+        final Set<String> names;
+
+        Flag(boolean enabled, int rollout, long salt, List<String> users)
+        {
+            this.enabled = enabled;
+            this.rollout = rollout;
+            this.salt = salt;
+            this.names = new HashSet<>(users);
+
+            long[] ids = new long[users.size()];
+            int count = 0;
+
+            for (String user : users)
+            {
+                try
+                {
+                    ids[count] = Long.parseLong(user);
+                    count++;
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // Only in the string ids
+                }
+            }
+
+            this.users = new LongSet(ids, count);
+        }
+    }
+
+    /**
+     * An immutable open addressing set of longs
+     */
+    private static final class LongSet
+    {
+        private final long[] table;
+        private final boolean[] used;
+        private final int mask;
+
+        LongSet(long[] values, int count)
+        {
+            int capacity = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+
+            this.table = new long[capacity];
+            this.used = new boolean[capacity];
+            this.mask = capacity - 1;
+
+            for (int i = 0; i < count; i++)
+            {
+                int slot = slot(values[i]);
+
+                while (used[slot] && table[slot] != values[i])
+                {
+                    slot = (slot + 1) & mask;
+                }
+
+                table[slot] = values[i];
+                used[slot] = true;
+            }
+        }
+
+        boolean contains(long value)
+        {
+            int slot = slot(value);
+
+            while (used[slot])
+            {
+                if (table[slot] == value)
+                {
+                    return true;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            return false;
+        }
+
+        private int slot(long value)
+        {
+            long hash = value * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
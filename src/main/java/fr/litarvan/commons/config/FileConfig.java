@@ -18,14 +18,50 @@
  */
 package fr.litarvan.commons.config;
 
+import fr.litarvan.commons.io.FileSource;
 import fr.litarvan.commons.io.IOSource;
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * The File Config<br><br>
  *
  *
- * A config that can be loaded/saved from/to a file.
+ * A config that can be loaded/saved from/to a file.<br><br>
+ *
+ * By default, when auto save is enabled, the whole config is
+ * saved each time a value is set. Using {@link #autoSave(long, long, TimeUnit)}
+ * the config is instead only marked as changed, and saved later
+ * by a background thread, once for all the changes made in the
+ * meantime.<br><br>
+ *
+ * Using {@link #watch(long, TimeUnit)}, the config is reloaded
+ * when its file is modified by another program. Configs shared
+ * by several processes can use {@link #shared(boolean)} instead.
  *
  * @author Litarvan
  * @version 1.0.0
@@ -43,6 +79,41 @@ public abstract class FileConfig implements Config
      */
     protected IOSource file;
 
+    /**
+     * If a parsed copy of the file should be kept next to it
+     */
+    protected boolean compiledCache;
+
+    /**
+     * If readers should see immutable versions of the config
+     */
+    protected volatile boolean snapshots;
+
+    /**
+     * The listeners of the changes of the config
+     */
+    protected final ConfigListeners listeners = new ConfigListeners();
+
+    private long debounce = -1;
+    private long maxLatency;
+
+    private volatile boolean dirty;
+    private volatile long firstChange;
+    private volatile long lastChange;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile int editing;
+    private boolean edited;
+
+    private volatile long watchDebounce = -1;
+    private volatile long lastEvent;
+    private volatile long watchedLength;
+    private volatile long watchedModified;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+
+    private volatile SharedVersion shared;
+    private volatile long sharedVersion;
+
     /**
      * Empty config, no file set, can't save until set.
      */
@@ -109,7 +180,10 @@ public abstract class FileConfig implements Config
     }
 
     /**
-     * Enable or disable automatic saving when setting a value
+     * Enable or disable automatic saving when setting a value.<br>
+     * The saves will be done right away, changes waiting for a
+     * delayed save (see {@link #autoSave(long, long, TimeUnit)}) are
+     * saved first.
      *
      * @param autoSave Enable/disable the auto save
      *
@@ -117,10 +191,390 @@ public abstract class FileConfig implements Config
      */
     public FileConfig autoSave(boolean autoSave)
     {
+        this.flush();
+
         this.autoSave = autoSave;
+        this.debounce = -1;
+
+        return this;
+    }
+
+    /**
+     * Enable delayed automatic saving.<br><br>
+     *
+     * Setting a value only marks the config as changed, it is
+     * then saved by a background thread once no value was set for
+     * the given debounce time, or at most the given max latency
+     * after the first unsaved change.<br><br>
+     *
+     * Use {@link #flush()} to save the pending changes right away.
+     * Pending changes are also saved when the JVM shuts down.
+     *
+     * @param debounce The time without any change to wait before saving
+     * @param maxLatency The maximum time a change can wait before being saved
+     * @param unit The unit of the given times
+     *
+     * @return This
+     */
+    public FileConfig autoSave(long debounce, long maxLatency, TimeUnit unit)
+    {
+        if (debounce < 0 || maxLatency < debounce)
+        {
+            throw new IllegalArgumentException("Debounce must be positive and lower than the max latency");
+        }
+
+        this.autoSave = true;
+        this.debounce = unit.toNanos(debounce);
+        this.maxLatency = unit.toNanos(maxLatency);
+
         return this;
     }
 
+    /**
+     * Must be called by the implementations after changing a
+     * value, it saves the config or schedules its save depending
+     * on the auto save mode.
+     */
+    protected void changed()
+    {
+        if (editing > 0 && edited())
+        {
+            return;
+        }
+
+        if (!autoSave)
+        {
+            return;
+        }
+
+        if (debounce < 0)
+        {
+            saveChanges();
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (!dirty)
+        {
+            firstChange = now;
+            dirty = true;
+        }
+
+        lastChange = now;
+
+        if (scheduled.compareAndSet(false, true))
+        {
+            Saver.PENDING.add(this);
+            Saver.EXECUTOR.schedule(this::saveLater, debounce, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Mark the running edition as having changed the config. As the
+     * edition holds the monitor, other threads wait for it to end here.
+     *
+     * @return If the config is saved at the end of an edition
+     */
+    private synchronized boolean edited()
+    {
+        if (editing == 0)
+        {
+            return false;
+        }
+
+        edited = true;
+        return true;
+    }
+
+    private void saveLater()
+    {
+        long deadline = Math.min(lastChange + debounce, firstChange + maxLatency);
+        long remaining = deadline - System.nanoTime();
+
+        if (remaining > 0)
+        {
+            Saver.EXECUTOR.schedule(this::saveLater, remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        scheduled.set(false);
+        Saver.PENDING.remove(this);
+
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException ignored)
+        {
+            // The config stays dirty, the save will be retried on the next change or flush()
+        }
+    }
+
+    /**
+     * Save the changes waiting for a delayed save, if there is any,
+     * and wait for them to be written to the disk.
+     *
+     * @return This
+     */
+    public synchronized FileConfig flush()
+    {
+        if (!dirty)
+        {
+            return this;
+        }
+
+        dirty = false;
+
+        try
+        {
+            saveChanges();
+
+            if (file instanceof FileSource)
+            {
+                try (FileChannel channel = FileChannel.open(((FileSource) file).getFile().toPath(), StandardOpenOption.WRITE))
+                {
+                    channel.force(true);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            dirty = true;
+            throw new RuntimeException("Can't sync the config to the disk", e);
+        }
+        catch (RuntimeException e)
+        {
+            dirty = true;
+            throw e;
+        }
+
+        return this;
+    }
+
+    @Override
+    public FileConfig onChange(String path, ConfigListener listener)
+    {
+        listeners.add(path, listener);
+        return this;
+    }
+
+    @Override
+    public FileConfig removeListener(ConfigListener listener)
+    {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Define the executor calling the listeners of the config
+     * (see {@link #onChange(String, ConfigListener)}). By default a
+     * single thread, shared by every config, calls them in the order
+     * of the changes, so a slow listener never blocks a writer.
+     * Listeners can be called by the writers themselves using
+     * {@code Runnable::run}.
+     *
+     * @param executor The executor calling the listeners
+     *
+     * @return This
+     */
+    public FileConfig listenerExecutor(Executor executor)
+    {
+        listeners.executor(executor);
+        return this;
+    }
+
+    /**
+     * Watch the file of the config, reloading it when it is modified
+     * by another program.<br><br>
+     *
+     * The config is reloaded once the file wasn't modified for the
+     * given debounce time, and only if its size or modification time
+     * differ from the last time it was loaded or saved. Only the
+     * values that changed are replaced when the config supports it
+     * (see {@link #reload()}). Values set but not saved yet may be
+     * replaced by the ones of the file.<br><br>
+     *
+     * A reload failing, because of a file being written by example,
+     * is ignored until the next modification.
+     *
+     * @param debounce The time without any modification to wait before reloading
+     * @param unit The unit of the debounce time
+     *
+     * @return This
+     *
+     * @throws IllegalStateException If the config isn't stored in a file
+     */
+    public FileConfig watch(long debounce, TimeUnit unit)
+    {
+        if (!(file instanceof FileSource))
+        {
+            throw new IllegalStateException("Only configs stored in files can be watched");
+        }
+
+        File watched = ((FileSource) file).getFile().getAbsoluteFile();
+
+        stamp(watched);
+        this.watchDebounce = unit.toNanos(debounce);
+
+        Watcher.watch(this, watched.toPath());
+
+        return this;
+    }
+
+    /**
+     * Stop watching the file of the config
+     *
+     * @return This
+     */
+    public FileConfig unwatch()
+    {
+        if (watchDebounce >= 0)
+        {
+            watchDebounce = -1;
+            Watcher.unwatch(this);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return If the file of the config is watched
+     */
+    public boolean isWatched()
+    {
+        return watchDebounce >= 0;
+    }
+
+    /**
+     * Must be called by the implementations after saving the config,
+     * so the watcher doesn't reload it (see {@link #writeFile(Runnable)}).
+     */
+    protected void saved()
+    {
+        if (watchDebounce >= 0 && file instanceof FileSource)
+        {
+            stamp(((FileSource) file).getFile());
+        }
+    }
+
+    private void stamp(File file)
+    {
+        watchedLength = file.length();
+        watchedModified = file.lastModified();
+    }
+
+    private void modified()
+    {
+        lastEvent = System.nanoTime();
+
+        if (reloadScheduled.compareAndSet(false, true))
+        {
+            Watcher.EXECUTOR.schedule(this::reloadLater, watchDebounce, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void reloadLater()
+    {
+        long debounce = watchDebounce;
+
+        if (debounce < 0)
+        {
+            reloadScheduled.set(false);
+            return;
+        }
+
+        long remaining = lastEvent + debounce - System.nanoTime();
+
+        if (remaining > 0)
+        {
+            Watcher.EXECUTOR.schedule(this::reloadLater, remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        reloadScheduled.set(false);
+
+        File file = ((FileSource) this.file).getFile();
+
+        if (!file.exists() || file.length() == watchedLength && file.lastModified() == watchedModified)
+        {
+            return;
+        }
+
+        try
+        {
+            stamp(file);
+            reload();
+        }
+        catch (RuntimeException ignored)
+        {
+            // The file may be partially written, it is reloaded on its next modification
+        }
+    }
+
+    /**
+     * Reload the config from its file, after it was modified by
+     * another program (see {@link #watch(long, TimeUnit)}).<br>
+     * By default the whole config is loaded again, implementations
+     * can replace only the values that changed.
+     */
+    protected void reload()
+    {
+        load();
+    }
+
+    /**
+     * Edit the config, saving it only once at the end, even if
+     * auto save is disabled.<br><br>
+     *
+     * Other writers are blocked until the edition is done, the
+     * implementations set their values holding the monitor of the
+     * config. If the given edition throws, the changes it made
+     * before are still saved.<br><br>
+     *
+     * Example :
+     * <pre>
+     *     config.edit(c -&gt; {
+     *         c.set("server.host", "localhost");
+     *         c.set("server.port", 8080);
+     *     });
+     * </pre>
+     *
+     * @param edition The changes to make on the config
+     *
+     * @return This
+     */
+    @Override
+    public synchronized FileConfig edit(Consumer<Config> edition)
+    {
+        editing++;
+
+        try
+        {
+            edition.accept(this);
+        }
+        finally
+        {
+            editing--;
+
+            if (editing == 0 && edited)
+            {
+                edited = false;
+                saveChanges();
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @return If some changes are waiting for a delayed save
+     */
+    public boolean isDirty()
+    {
+        return dirty;
+    }
+
     /**
      * @return If it automatically saves when setting a value
      */
@@ -129,6 +583,186 @@ public abstract class FileConfig implements Config
         return autoSave;
     }
 
+    /**
+     * Enable or disable the compiled cache for the next loads.<br><br>
+     *
+     * When enabled, loading a config from a file writes a binary copy
+     * of the parsed config next to it (as 'file.ext.cache'). The next
+     * loads map this copy instead of parsing the file again, as long
+     * as the file size, modification time and checksum didn't change.
+     * Otherwise the file is parsed as usual and the cache rewritten.<br><br>
+     *
+     * Only file sources are cached.
+     *
+     * @param compiledCache Enable/disable the compiled cache
+     *
+     * @return This
+     */
+    public FileConfig compiledCache(boolean compiledCache)
+    {
+        this.compiledCache = compiledCache;
+        return this;
+    }
+
+    /**
+     * @return If a parsed copy of the file is kept next to it
+     */
+    public boolean isCompiledCacheEnabled()
+    {
+        return compiledCache;
+    }
+
+    /**
+     * Enable or disable the snapshot mode.<br><br>
+     *
+     * In snapshot mode, readers always see an immutable version of
+     * the config through a volatile reference, so reads never lock
+     * and are never affected by a concurrent write. Writers build a
+     * new version, sharing what didn't change with the previous one,
+     * and publish it at once. Writes are slower, this mode is made
+     * for configs read by many threads and rarely written.<br><br>
+     *
+     * Configs whose reads are already lock-free ignore it.
+     *
+     * @param snapshots Enable/disable the snapshot mode
+     *
+     * @return This
+     */
+    public FileConfig snapshots(boolean snapshots)
+    {
+        this.snapshots = snapshots;
+        return this;
+    }
+
+    /**
+     * @return If readers see immutable versions of the config
+     */
+    public boolean isSnapshotsEnabled()
+    {
+        return snapshots;
+    }
+
+    /**
+     * Enable or disable the multi-process mode, for a config file
+     * written by several processes.<br><br>
+     *
+     * The processes share a version of the file, stored in a small
+     * file next to it ('file.version') mapped in memory. Saving locks
+     * it, so saves of several processes never mix, and increments the
+     * version. {@link #refresh()} reloads the config only if the
+     * version changed, which only costs a read of the mapped memory.<br><br>
+     *
+     * If the file was saved by another process in the meantime, saving
+     * reads it again and keeps the values of the other process, except
+     * the ones set since the last save (see {@link #rebase()}).
+     *
+     * @param shared Enable/disable the multi-process mode
+     *
+     * @return This
+     *
+     * @throws IllegalStateException If the config isn't stored in a file
+     */
+    public FileConfig shared(boolean shared)
+    {
+        if (!shared)
+        {
+            this.shared = null;
+            return this;
+        }
+
+        if (!(file instanceof FileSource))
+        {
+            throw new IllegalStateException("Only configs stored in files can be shared");
+        }
+
+        SharedVersion version = SharedVersion.of(((FileSource) file).getFile());
+
+        this.sharedVersion = version.get();
+        this.shared = version;
+
+        return this;
+    }
+
+    /**
+     * @return If the multi-process mode is enabled
+     */
+    public boolean isShared()
+    {
+        return shared != null;
+    }
+
+    /**
+     * Reload the config if another process saved it since it was last
+     * loaded, saved or refreshed (see {@link #shared(boolean)}). The file
+     * can't be saved by another process while it is reloaded.
+     *
+     * @return If the config was reloaded
+     *
+     * @throws IllegalStateException If the multi-process mode isn't enabled
+     */
+    public synchronized boolean refresh()
+    {
+        SharedVersion shared = this.shared;
+
+        if (shared == null)
+        {
+            throw new IllegalStateException("The multi-process mode isn't enabled");
+        }
+
+        if (shared.get() == sharedVersion)
+        {
+            return false;
+        }
+
+        sharedVersion = shared.read(this::reload);
+
+        return true;
+    }
+
+    /**
+     * Must be used by the implementations to write the config file :
+     * in multi-process mode, the file is locked while it is written,
+     * and its shared version incremented. Calls {@link #saved()} after.
+     *
+     * @param write The writing of the file
+     */
+    protected void writeFile(Runnable write)
+    {
+        SharedVersion shared = this.shared;
+
+        if (shared == null)
+        {
+            write.run();
+        }
+        else
+        {
+            sharedVersion = shared.write(() -> {
+                // Another process saved since the last sync, its changes must not be overwritten
+                if (shared.get() != sharedVersion)
+                {
+                    rebase();
+                }
+
+                write.run();
+            });
+        }
+
+        saved();
+    }
+
+    /**
+     * Called in multi-process mode before saving, when the file was
+     * saved by another process since the config was last loaded,
+     * saved or refreshed. Implementations read the file again and
+     * apply on it the values set since the last save, so the save
+     * doesn't overwrite the changes of the other process.<br><br>
+     *
+     * By default the config is kept as it is.
+     */
+    protected void rebase()
+    {
+    }
+
     /**
      * @return If saving is supported
      */
@@ -155,6 +789,17 @@ public abstract class FileConfig implements Config
      */
     public abstract FileConfig save();
 
+    /**
+     * Save the changes made since the last save, called by the auto
+     * save and by {@link #edit(Consumer)}. Implementations knowing
+     * that nothing changed can skip the write, {@link #save()} always
+     * writes the config. Saves the whole config by default.
+     */
+    protected void saveChanges()
+    {
+        save();
+    }
+
     /**
      * Provide a default configuration from a file
      *
@@ -175,4 +820,124 @@ public abstract class FileConfig implements Config
      * @return This
      */
     public abstract FileConfig defaultIn(IOSource source);
+
+    private static final class Watcher
+    {
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Config reloader");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        private static final Map<Path, Set<FileConfig>> WATCHED = new HashMap<>();
+        private static final Map<Path, WatchKey> KEYS = new HashMap<>();
+        private static WatchService service;
+
+        static synchronized void watch(FileConfig config, Path file)
+        {
+            Path directory = file.getParent();
+
+            try
+            {
+                if (service == null)
+                {
+                    service = FileSystems.getDefault().newWatchService();
+
+                    Thread thread = new Thread(Watcher::run, "Config watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+
+                if (!KEYS.containsKey(directory))
+                {
+                    KEYS.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                }
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Can't watch the config file", e);
+            }
+
+            WATCHED.computeIfAbsent(directory, d -> new HashSet<>()).add(config);
+        }
+
+        static synchronized void unwatch(FileConfig config)
+        {
+            Iterator<Map.Entry<Path, Set<FileConfig>>> iterator = WATCHED.entrySet().iterator();
+
+            while (iterator.hasNext())
+            {
+                Map.Entry<Path, Set<FileConfig>> entry = iterator.next();
+
+                if (entry.getValue().remove(config) && entry.getValue().isEmpty())
+                {
+                    KEYS.remove(entry.getKey()).cancel();
+                    iterator.remove();
+                }
+            }
+        }
+
+        private static synchronized List<FileConfig> watching(Path directory, Path name)
+        {
+            List<FileConfig> configs = new ArrayList<>();
+
+            for (FileConfig config : WATCHED.getOrDefault(directory, Collections.emptySet()))
+            {
+                File file = ((FileSource) config.file).getFile().getAbsoluteFile();
+
+                if (name == null || file.toPath().getFileName().equals(name))
+                {
+                    configs.add(config);
+                }
+            }
+
+            return configs;
+        }
+
+        private static void run()
+        {
+            while (true)
+            {
+                WatchKey key;
+
+                try
+                {
+                    key = service.take();
+                }
+                catch (InterruptedException | ClosedWatchServiceException e)
+                {
+                    return;
+                }
+
+                Path directory = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    // Some events were lost, every file of the directory may have changed
+                    Path name = event.kind() == StandardWatchEventKinds.OVERFLOW ? null : (Path) event.context();
+
+                    watching(directory, name).forEach(FileConfig::modified);
+                }
+
+                key.reset();
+            }
+        }
+    }
+
+    private static final class Saver
+    {
+        static final Set<FileConfig> PENDING = ConcurrentHashMap.newKeySet();
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Config saver");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        static
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> PENDING.forEach(FileConfig::flush), "Config saver shutdown"));
+        }
+    }
 }
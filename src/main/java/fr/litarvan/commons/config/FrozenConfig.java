@@ -0,0 +1,605 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * The Frozen Config<br><br>
+ *
+ *
+ * An immutable copy of a config, made by {@link Config#freeze()},
+ * for configs that don't change once loaded.<br><br>
+ *
+ * Every path of the config is indexed by a minimal perfect hash
+ * (built using the hash and displace method), so reading a value
+ * takes one mix of the key hash code, two array reads and one comparison,
+ * without any lock. String values are converted when freezing,
+ * and the last immutable object (like a string or a number) decoded
+ * at each path is kept, so reading it again with the same type doesn't
+ * allocate anything. Strings and primitives are parsed once for
+ * {@link #getInt(String, int)} and the other primitive accessors.<br><br>
+ *
+ * Keys and paths are the same here : get("a.b") and at("a.b")
+ * both return the member 'b' of the object 'a'. Setting a value
+ * throws an {@link UnsupportedOperationException}.<br><br>
+ *
+ * Mutable objects are decoded again by every call, so readers
+ * modifying them don't affect each other.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class FrozenConfig implements Config
+{
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+
+    private final boolean charHash;
+    private final long salt;
+    private final int[] displacements;
+    private final String[] keys;
+    private final String[] strings;
+    private final JsonElement[] trees;
+    private final Decoded[] decoded;
+    private final PrimitiveValue[] primitives;
+    private final GsonRegistry registry;
+
+    private volatile NavigableSet<String> sorted;
+
+    private FrozenConfig(Map<String, ?> values, GsonRegistry registry)
+    {
+        int size = values.size();
+
+        this.keys = values.keySet().toArray(new String[size]);
+        this.displacements = new int[Math.max(1, (size + BUCKET_SIZE - 1) / BUCKET_SIZE)];
+        this.registry = registry;
+
+        // The cached hash code of the keys is used, unless two keys have the same
+        Set<Integer> hashCodes = new HashSet<>(size * 2);
+        boolean charHash = false;
+
+        for (String key : keys)
+        {
+            if (!hashCodes.add(key.hashCode()))
+            {
+                charHash = true;
+                break;
+            }
+        }
+
+        this.charHash = charHash;
+
+        long salt = 0;
+        int[] slots;
+
+        while ((slots = place(keys, displacements, charHash, salt)) == null)
+        {
+            salt++;
+        }
+
+        this.salt = salt;
+
+        String[] ordered = new String[size];
+        for (int i = 0; i < size; i++)
+        {
+            ordered[slots[i]] = keys[i];
+        }
+
+        System.arraycopy(ordered, 0, keys, 0, size);
+
+        this.strings = new String[size];
+        this.trees = registry == null ? null : new JsonElement[size];
+        this.decoded = registry == null ? null : new Decoded[size];
+        this.primitives = new PrimitiveValue[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            Object value = values.get(keys[i]);
+
+            if (value instanceof JsonElement)
+            {
+                JsonElement tree = (JsonElement) value;
+
+                trees[i] = tree;
+                strings[i] = tree.isJsonPrimitive() ? tree.getAsString() : null;
+            }
+            else
+            {
+                strings[i] = (String) value;
+            }
+        }
+    }
+
+    /**
+     * Freeze the values of a JSON config
+     *
+     * @param index Every path of the config and its value, that must not be modified anymore
+     * @param registry The registry used to decode the values
+     *
+     * @return The frozen config
+     */
+    static FrozenConfig json(Map<String, JsonElement> index, GsonRegistry registry)
+    {
+        return new FrozenConfig(index, registry);
+    }
+
+    /**
+     * Freeze string values
+     *
+     * @param values Every key of the config and its value
+     *
+     * @return The frozen config
+     */
+    static FrozenConfig strings(Map<String, String> values)
+    {
+        return new FrozenConfig(values, null);
+    }
+
+    /**
+     * @return The values at the root of the config, without decoding
+     *         anything, or null if it only holds strings
+     */
+    JsonObject tree()
+    {
+        if (trees == null)
+        {
+            return null;
+        }
+
+        JsonObject root = new JsonObject();
+
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i].indexOf('.') == -1)
+            {
+                root.add(keys[i], trees[i]);
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Find a displacement for each bucket of keys so that every key
+     * gets its own slot. Buckets are placed from the biggest to the
+     * smallest, and the buckets of a single key directly take one of
+     * the remaining slots (stored as a negative displacement).
+     *
+     * @return The slot of each key, or null if no displacement was found with this salt
+     */
+    private static int[] place(String[] keys, int[] displacements, boolean charHash, long salt)
+    {
+        int size = keys.length;
+        int buckets = displacements.length;
+
+        long[] hashes = new long[size];
+        List<List<Integer>> content = new ArrayList<>(buckets);
+
+        for (int i = 0; i < buckets; i++)
+        {
+            content.add(new ArrayList<>(BUCKET_SIZE));
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            hashes[i] = hash(keys[i], charHash, salt);
+            content.get(bucket(hashes[i], buckets)).add(i);
+        }
+
+        Integer[] order = new Integer[buckets];
+        for (int i = 0; i < buckets; i++)
+        {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (a, b) -> content.get(b).size() - content.get(a).size());
+        Arrays.fill(displacements, 0);
+
+        int[] slots = new int[size];
+        boolean[] taken = new boolean[size];
+        int free = 0;
+
+        for (int bucket : order)
+        {
+            List<Integer> members = content.get(bucket);
+
+            if (members.isEmpty())
+            {
+                break;
+            }
+
+            if (members.size() == 1)
+            {
+                while (taken[free])
+                {
+                    free++;
+                }
+
+                taken[free] = true;
+                slots[members.get(0)] = free;
+                displacements[bucket] = -free - 1;
+
+                continue;
+            }
+
+            int displacement = 1;
+
+            search:
+            while (true)
+            {
+                if (displacement > MAX_DISPLACEMENT)
+                {
+                    return null;
+                }
+
+                for (int i = 0; i < members.size(); i++)
+                {
+                    int slot = slot(hashes[members.get(i)], displacement, size);
+
+                    if (taken[slot])
+                    {
+                        clear(members, i, hashes, displacement, taken);
+                        displacement++;
+
+                        continue search;
+                    }
+
+                    taken[slot] = true;
+                }
+
+                break;
+            }
+
+            for (int member : members)
+            {
+                slots[member] = slot(hashes[member], displacement, size);
+            }
+
+            displacements[bucket] = displacement;
+        }
+
+        return slots;
+    }
+
+    private static void clear(List<Integer> members, int count, long[] hashes, int displacement, boolean[] taken)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            taken[slot(hashes[members.get(i)], displacement, taken.length)] = false;
+        }
+    }
+
+    private static long hash(String key, boolean charHash, long salt)
+    {
+        if (!charHash)
+        {
+            return mix(key.hashCode() ^ salt * 0x9E3779B97F4A7C15L);
+        }
+
+        long hash = 0xCBF29CE484222325L ^ salt * 0x9E3779B97F4A7C15L;
+
+        for (int i = 0; i < key.length(); i++)
+        {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+
+        return mix(hash);
+    }
+
+    private static long mix(long hash)
+    {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+
+        return hash ^ (hash >>> 33);
+    }
+
+    private static int bucket(long hash, int buckets)
+    {
+        return (int) ((hash >>> 33) % buckets);
+    }
+
+    private static int slot(long hash, int displacement, int size)
+    {
+        return (int) ((mix(hash + displacement * 0x9E3779B97F4A7C15L) >>> 1) % size);
+    }
+
+    /**
+     * @return The slot of the key, or -1 if it isn't in the config
+     */
+    private int find(String key)
+    {
+        if (keys.length == 0)
+        {
+            return -1;
+        }
+
+        long hash = hash(key, charHash, salt);
+        int displacement = displacements[bucket(hash, displacements.length)];
+        int slot = displacement < 0 ? -displacement - 1 : slot(hash, displacement, keys.length);
+
+        return keys[slot].equals(key) ? slot : -1;
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        int slot = find(key);
+
+        if (slot == -1)
+        {
+            return def;
+        }
+
+        String value = strings[slot];
+
+        if (value == null && trees != null)
+        {
+            return get(key, def, String.class);
+        }
+
+        return value == null ? def : value;
+    }
+
+    @Override
+    public <T> T get(String key, T def, Class<T> type)
+    {
+        return get(key, def, (Type) type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, T def, Type type)
+    {
+        if (trees == null)
+        {
+            return Config.super.get(key, def, type);
+        }
+
+        int slot = find(key);
+
+        if (slot == -1)
+        {
+            return def;
+        }
+
+        Decoded last = decoded[slot];
+
+        if (last != null && last.type.equals(type))
+        {
+            return last.value == null ? def : (T) last.value;
+        }
+
+        T value = registry.fromJson(trees[slot], type);
+
+        if (ValueCache.isImmutable(value))
+        {
+            decoded[slot] = new Decoded(type, value);
+        }
+
+        return value == null ? def : value;
+    }
+
+    /**
+     * Lists the paths of the values that aren't objects
+     */
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        return Keys.range(sorted(), prefix);
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        NavigableSet<String> sorted = sorted();
+
+        for (String key : prefix.isEmpty() ? sorted : keys(prefix))
+        {
+            int slot = find(key);
+            String value = strings[slot];
+
+            if (value == null && trees != null && !trees[slot].isJsonNull())
+            {
+                value = trees[slot].toString();
+            }
+
+            consumer.accept(key, value);
+        }
+    }
+
+    private NavigableSet<String> sorted()
+    {
+        NavigableSet<String> sorted = this.sorted;
+
+        if (sorted == null)
+        {
+            // Never modified once built, building it twice at the same time is harmless
+            sorted = new TreeSet<>();
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (trees == null || !trees[i].isJsonObject())
+                {
+                    sorted.add(keys[i]);
+                }
+            }
+
+            this.sorted = sorted;
+        }
+
+        return sorted;
+    }
+
+    @Override
+    public boolean has(String path)
+    {
+        int slot = find(path);
+        return slot != -1 && (strings[slot] != null || (trees != null && !trees[slot].isJsonNull()));
+    }
+
+    @Override
+    public int getInt(String key, int def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getInt(def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getLong(def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getDouble(def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getBoolean(def);
+    }
+
+    /**
+     * @return The frozen string of the key parsed as primitives, or null if not found or not a primitive
+     */
+    private PrimitiveValue primitive(String key)
+    {
+        int slot = find(key);
+
+        if (slot == -1 || strings[slot] == null)
+        {
+            return null;
+        }
+
+        PrimitiveValue value = primitives[slot];
+
+        if (value == null)
+        {
+            // Parsed values are immutable, parsing it twice at the same time is harmless
+            primitives[slot] = value = PrimitiveValue.parse(strings[slot]);
+        }
+
+        return value;
+    }
+
+    @Override
+    public String at(String path, String def)
+    {
+        return trees == null ? get(path, def) : at(path, def, String.class);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Class<T> type)
+    {
+        return at(path, def, (Type) type);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Type type)
+    {
+        try
+        {
+            return get(path, def, type);
+        }
+        catch (JsonParseException e)
+        {
+            return def;
+        }
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        throw new UnsupportedOperationException("A frozen config can't be modified");
+    }
+
+    @Override
+    public void set(String key, Object value)
+    {
+        throw new UnsupportedOperationException("A frozen config can't be modified");
+    }
+
+    /**
+     * A frozen config never changes, the listener is never called
+     *
+     * @return This
+     */
+    @Override
+    public FrozenConfig onChange(String path, ConfigListener listener)
+    {
+        return this;
+    }
+
+    @Override
+    public FrozenConfig removeListener(ConfigListener listener)
+    {
+        return this;
+    }
+
+    /**
+     * @return This, as it is already frozen
+     */
+    @Override
+    public FrozenConfig freeze()
+    {
+        return this;
+    }
+
+    /**
+     * @return The number of keys of the config
+     */
+    public int size()
+    {
+        return keys.length;
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        return trees != null;
+    }
+
+    @Override
+    public boolean isSavingSupported()
+    {
+        return false;
+    }
+}
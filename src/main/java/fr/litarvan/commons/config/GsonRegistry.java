@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Gson Registry<br><br>
+ *
+ *
+ * Holds a Gson instance and the type adapters it created, so
+ * they can be shared between every {@link JSONConfig}, instead
+ * of each config building its own.<br><br>
+ *
+ * The adapters of the types that are read on hot paths can be
+ * created ahead of time using {@link #warm(Type...)}, so the
+ * first read doesn't have to reflect on them.<br><br>
+ *
+ * Example :
+ * <pre>
+ *     GsonRegistry.shared().warm(ServerConf.class, new TypeToken&lt;List&lt;Rule&gt;&gt;(){}.getType());
+ * </pre>
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class GsonRegistry
+{
+    private static final GsonRegistry SHARED = new GsonRegistry(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create());
+
+    private final Gson gson;
+    private final Map<Type, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+
+    /**
+     * The Gson Registry
+     *
+     * @param gson The Gson instance creating the adapters
+     */
+    public GsonRegistry(Gson gson)
+    {
+        this.gson = gson;
+    }
+
+    /**
+     * @return The registry used by default by every config
+     */
+    public static GsonRegistry shared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Create the adapters of the given types now
+     *
+     * @param types The types that will be decoded
+     *
+     * @return This
+     */
+    public GsonRegistry warm(Type... types)
+    {
+        for (Type type : types)
+        {
+            adapter(type);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the adapter of a type, creating it if needed
+     *
+     * @param type The type to adapt
+     *
+     * @param <T> The type to adapt
+     *
+     * @return The adapter of the type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> adapter(Type type)
+    {
+        TypeAdapter<?> adapter = adapters.get(type);
+
+        if (adapter == null)
+        {
+            adapter = adapters.computeIfAbsent(type, t -> gson.getAdapter(TypeToken.get(t)));
+        }
+
+        return (TypeAdapter<T>) adapter;
+    }
+
+    /**
+     * Decode a JSON tree
+     *
+     * @param element The tree to decode, can be null
+     * @param type The type of the object to decode
+     *
+     * @param <T> The type of the object to decode
+     *
+     * @return The decoded object, or null if the tree was null
+     *
+     * @throws JsonSyntaxException If the tree doesn't match the type
+     */
+    public <T> T fromJson(JsonElement element, Type type)
+    {
+        if (element == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return this.<T>adapter(type).fromJsonTree(element);
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Encode an object to a JSON tree
+     *
+     * @param value The object to encode
+     *
+     * @return The created tree
+     */
+    public JsonElement toJsonTree(Object value)
+    {
+        return gson.toJsonTree(value);
+    }
+
+    /**
+     * @return The Gson instance of this registry
+     */
+    public Gson getGson()
+    {
+        return gson;
+    }
+}
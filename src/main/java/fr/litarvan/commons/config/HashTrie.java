@@ -0,0 +1,380 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The Hash Trie<br><br>
+ *
+ *
+ * A persistent map of strings, as a hash array mapped trie : each
+ * node has up to 32 entries, chosen by 5 bits of the hash of the keys,
+ * and only stores the ones it has. Putting or removing a key copies
+ * the nodes on its path, and shares every other one with the previous
+ * map, so both can be kept for a small cost.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class HashTrie
+{
+    static final HashTrie EMPTY = new HashTrie(BitmapNode.EMPTY);
+
+    private final Node root;
+
+    private HashTrie(Node root)
+    {
+        this.root = root;
+    }
+
+    /**
+     * @param key The key of the value
+     *
+     * @return The value, or null if there isn't any
+     */
+    Object get(String key)
+    {
+        return root.get(key, hash(key), 0);
+    }
+
+    /**
+     * @param key The key of the value
+     * @param value The value, not null
+     *
+     * @return A map with the value put
+     */
+    HashTrie put(String key, Object value)
+    {
+        Node root = this.root.put(key, hash(key), 0, value);
+        return root == this.root ? this : new HashTrie(root);
+    }
+
+    /**
+     * @param key The key to remove
+     *
+     * @return A map without the key
+     */
+    HashTrie remove(String key)
+    {
+        Node root = this.root.remove(key, hash(key), 0);
+
+        if (root == this.root)
+        {
+            return this;
+        }
+
+        return root == null ? EMPTY : new HashTrie(root);
+    }
+
+    /**
+     * Call the given action with every key and value, in no particular order
+     *
+     * @param action The action to call
+     */
+    void forEach(BiConsumer<String, Object> action)
+    {
+        root.forEach(action);
+    }
+
+    private static int hash(String key)
+    {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static Node pair(int shift, String a, int hashA, Object valueA, String b, int hashB, Object valueB)
+    {
+        if (hashA == hashB)
+        {
+            return new CollisionNode(hashA, new Object[]{a, valueA, b, valueB});
+        }
+
+        return BitmapNode.EMPTY.put(a, hashA, shift, valueA).put(b, hashB, shift, valueB);
+    }
+
+    private interface Node
+    {
+        Object get(String key, int hash, int shift);
+
+        Node put(String key, int hash, int shift, Object value);
+
+        /**
+         * @return The node without the key, null if it is then empty
+         */
+        Node remove(String key, int hash, int shift);
+
+        void forEach(BiConsumer<String, Object> action);
+    }
+
+    /**
+     * A node storing its entries in an array of (key, value) pairs,
+     * the key being null if the value is a child node
+     */
+    private static final class BitmapNode implements Node
+    {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array)
+        {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit)
+        {
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        @Override
+        public Object get(String key, int hash, int shift)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+
+            if ((bitmap & bit) == 0)
+            {
+                return null;
+            }
+
+            int index = index(bit);
+            Object entryKey = array[index];
+
+            if (entryKey == null)
+            {
+                return ((Node) array[index + 1]).get(key, hash, shift + 5);
+            }
+
+            return key.equals(entryKey) ? array[index + 1] : null;
+        }
+
+        @Override
+        public Node put(String key, int hash, int shift, Object value)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0)
+            {
+                Object[] array = new Object[this.array.length + 2];
+
+                System.arraycopy(this.array, 0, array, 0, index);
+                array[index] = key;
+                array[index + 1] = value;
+                System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+
+                return new BitmapNode(bitmap | bit, array);
+            }
+
+            Object entryKey = array[index];
+            Object entryValue = array[index + 1];
+
+            if (entryKey == null)
+            {
+                Node child = ((Node) entryValue).put(key, hash, shift + 5, value);
+                return child == entryValue ? this : with(index + 1, child);
+            }
+
+            if (key.equals(entryKey))
+            {
+                return entryValue == value ? this : with(index + 1, value);
+            }
+
+            String existing = (String) entryKey;
+            Node child = pair(shift + 5, existing, HashTrie.hash(existing), entryValue, key, hash, value);
+
+            Object[] array = this.array.clone();
+            array[index] = null;
+            array[index + 1] = child;
+
+            return new BitmapNode(bitmap, array);
+        }
+
+        @Override
+        public Node remove(String key, int hash, int shift)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+
+            if ((bitmap & bit) == 0)
+            {
+                return this;
+            }
+
+            int index = index(bit);
+            Object entryKey = array[index];
+
+            if (entryKey == null)
+            {
+                Node child = (Node) array[index + 1];
+                Node removed = child.remove(key, hash, shift + 5);
+
+                if (removed == child)
+                {
+                    return this;
+                }
+
+                return removed == null ? without(bit, index) : with(index + 1, removed);
+            }
+
+            return key.equals(entryKey) ? without(bit, index) : this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action)
+        {
+            for (int i = 0; i < array.length; i += 2)
+            {
+                if (array[i] == null)
+                {
+                    ((Node) array[i + 1]).forEach(action);
+                }
+                else
+                {
+                    action.accept((String) array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode with(int index, Object value)
+        {
+            Object[] array = this.array.clone();
+            array[index] = value;
+
+            return new BitmapNode(bitmap, array);
+        }
+
+        private BitmapNode without(int bit, int index)
+        {
+            if (array.length == 2)
+            {
+                return null;
+            }
+
+            Object[] array = new Object[this.array.length - 2];
+
+            System.arraycopy(this.array, 0, array, 0, index);
+            System.arraycopy(this.array, index + 2, array, index, array.length - index);
+
+            return new BitmapNode(bitmap & ~bit, array);
+        }
+    }
+
+    /**
+     * A node of keys having the same hash
+     */
+    private static final class CollisionNode implements Node
+    {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array)
+        {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(String key)
+        {
+            for (int i = 0; i < array.length; i += 2)
+            {
+                if (key.equals(array[i]))
+                {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public Object get(String key, int hash, int shift)
+        {
+            int index = find(key);
+            return index == -1 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node put(String key, int hash, int shift, Object value)
+        {
+            if (hash != this.hash)
+            {
+                // Nested in a bitmap node at the place of this hash, then the key is put next to it
+                return new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[]{null, this}).put(key, hash, shift, value);
+            }
+
+            int index = find(key);
+
+            if (index != -1)
+            {
+                if (array[index + 1] == value)
+                {
+                    return this;
+                }
+
+                Object[] array = this.array.clone();
+                array[index + 1] = value;
+
+                return new CollisionNode(hash, array);
+            }
+
+            Object[] array = new Object[this.array.length + 2];
+
+            System.arraycopy(this.array, 0, array, 0, this.array.length);
+            array[this.array.length] = key;
+            array[this.array.length + 1] = value;
+
+            return new CollisionNode(hash, array);
+        }
+
+        @Override
+        public Node remove(String key, int hash, int shift)
+        {
+            int index = find(key);
+
+            if (index == -1)
+            {
+                return this;
+            }
+
+            if (array.length == 2)
+            {
+                return null;
+            }
+
+            Object[] array = new Object[this.array.length - 2];
+
+            System.arraycopy(this.array, 0, array, 0, index);
+            System.arraycopy(this.array, index + 2, array, index, array.length - index);
+
+            return new CollisionNode(hash, array);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action)
+        {
+            for (int i = 0; i < array.length; i += 2)
+            {
+                action.accept((String) array[i], array[i + 1]);
+            }
+        }
+    }
+}
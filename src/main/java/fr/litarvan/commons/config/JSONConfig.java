@@ -19,15 +19,59 @@
 package fr.litarvan.commons.config;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import fr.litarvan.commons.config.JsonScanner.Member;
+import fr.litarvan.commons.io.FileSource;
 import fr.litarvan.commons.io.IOSource;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
 /**
  * The JSON Config<br><br>
@@ -35,7 +79,10 @@ import org.apache.commons.io.IOUtils;
  *
  * A config made using JSON.<br>
  * To create one, consider using the {@link ConfigProvider#json}
- * methods.
+ * methods.<br><br>
+ *
+ * For big configs of which only a part is used, see {@link #lazy(int)}.
+ * For configs read by many threads, see {@link #snapshots(boolean)}.
  *
  * @author Litarvan
  * @version 1.0.0
@@ -43,170 +90,2142 @@ import org.apache.commons.io.IOUtils;
  */
 public class JSONConfig extends FileConfig
 {
-    private Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-    private JsonObject config;
+    private static final int STRIPES = 32;
+    static final ConfigListeners.Children CHILDREN = (value, name) -> value instanceof JsonObject ? ((JsonObject) value).get(name) : null;
+
+    private final GsonRegistry registry;
+    private volatile Version version = new Version(new JsonObject(), new ConcurrentHashMap<>());
+    private final ValueCache cache = new ValueCache();
+    private boolean compact;
+
+    private final ReadWriteLock rootLock = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean rewrite = true;
+    private final Map<String, JsonElement> pending = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private int lazyDepth;
+    private volatile Map<String, Member> lazy;
+    private IOSource lazySource;
+    private long lazyLength;
+    private long lazyModified;
 
     public JSONConfig()
     {
-        super();
+        this(null);
     }
 
     public JSONConfig(IOSource file)
     {
-        super(file);
+        this(file, GsonRegistry.shared());
+    }
+
+    /**
+     * JSON config from a source, using the given registry to
+     * encode and decode the values
+     *
+     * @param file The source of the config, loaded if it exists
+     * @param registry The registry of the type adapters to use
+     */
+    public JSONConfig(IOSource file, GsonRegistry registry)
+    {
+        // Not using super(file) as it would load before the fields are initialized
+        super();
+
+        this.registry = registry;
+        this.in(file);
+
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new Object();
+        }
+
+        if (file != null && file.exists())
+        {
+            this.load();
+        }
+    }
+
+    @Override
+    public FileConfig in(IOSource file)
+    {
+        // The new file doesn't hold the config yet
+        this.rewrite = true;
+
+        return super.in(file);
     }
 
     @Override
-    public FileConfig load()
+    public synchronized FileConfig load()
     {
         if (file == null)
         {
             throw new IllegalStateException("Config file isn't defined");
         }
 
-        config = read(file);
+        JsonObject root;
+        Map<String, Member> previousLazy = lazy;
+
+        if (lazyDepth > 0 && !snapshots)
+        {
+            root = scan(file);
+        }
+        else
+        {
+            root = compiledCache && file instanceof FileSource ? readCompiled(((FileSource) file).getFile()) : read(file);
+            lazy = null;
+        }
+
+        JsonObject previous = version.root;
+
+        publish(root);
+        rewrite = false;
+
+        listeners.fire("", previous, root, children(previous, previousLazy), this::copy);
 
         return this;
     }
 
-    private JsonObject read(IOSource source)
+    /**
+     * Finds the children of the values compared when the whole config
+     * is replaced, the previous version or the new one being lazily
+     * loaded (see {@link #lazy(int)}). The members of the new version
+     * that weren't read yet are read when a listener needs them. The
+     * members of the previous version that were never read can't be
+     * read anymore, they are considered unchanged.
+     *
+     * @param previous The root of the previous version
+     * @param previousLazy The members of the previous version that weren't read, or null
+     *
+     * @return The finder of the children of both versions
+     */
+    private ConfigListeners.Children children(JsonObject previous, Map<String, Member> previousLazy)
     {
-        try
+        if (previousLazy == null && lazy == null)
         {
-            return new JsonParser().parse(IOUtils.toString(source.provideInput(), Charset.defaultCharset())).getAsJsonObject();
+            return CHILDREN;
         }
-        catch (IOException e)
+
+        JsonObject current = version.root;
+
+        Map<JsonElement, String> previousParents = parents(previous, previousLazy);
+        Map<JsonElement, String> currentParents = parents(current, lazy);
+
+        return new ConfigListeners.Children()
         {
-            throw new RuntimeException("Can't read config", e);
-        }
+            @Override
+            public Object child(Object value, String name)
+            {
+                String parent = previousParents.get(value);
+
+                if (parent != null && pending(previousLazy, path(parent, name), false))
+                {
+                    // Unknown, the same as the new value so it isn't seen as a change
+                    Object section = parent.isEmpty() ? current : child(current, parent);
+                    return section == null ? null : child(section, name);
+                }
+
+                parent = currentParents.get(value);
+
+                if (parent != null && pending(lazy, path(parent, name), true))
+                {
+                    materialize(path(parent, name));
+                }
+
+                return CHILDREN.child(value, name);
+            }
+        };
     }
 
-    @Override
-    public FileConfig save()
+    /**
+     * @return The objects of a lazily loaded root that can have unread members, and their path
+     */
+    private static Map<JsonElement, String> parents(JsonObject root, Map<String, Member> lazy)
     {
-        try
-        {
-            IOUtils.write(gson.toJson(config), file.provideOutput(), Charset.defaultCharset());
-        }
-        catch (IOException e)
+        Map<JsonElement, String> parents = new IdentityHashMap<>();
+
+        if (lazy == null)
         {
-            throw new RuntimeException("Can't save the config", e);
+            return parents;
         }
 
-        return this;
+        parents.put(root, "");
+
+        lazy.forEach((name, member) -> {
+            JsonElement section = root.get(name);
+
+            if (member.children != null && section != null)
+            {
+                parents.put(section, name);
+            }
+        });
+
+        return parents;
     }
 
-    @Override
-    public FileConfig defaultIn(IOSource source)
+    /**
+     * @param lazy The members that weren't read, or null
+     * @param path A path of the root, or of a member of the root
+     * @param sections If a section having unread members counts as unread
+     *
+     * @return If the value at the path wasn't read
+     */
+    private static boolean pending(Map<String, Member> lazy, String path, boolean sections)
     {
-        if (file.exists())
+        if (lazy == null)
         {
-            return this;
+            return false;
         }
 
-        if (!source.exists())
+        int dot = path.indexOf('.');
+        Member member = lazy.get(dot == -1 ? path : path.substring(0, dot));
+
+        if (member == null)
         {
-            throw new RuntimeException("Default file doesn't exist");
+            return false;
         }
 
-        config = read(source);
-        save();
+        if (dot == -1)
+        {
+            return member.children == null || sections;
+        }
 
-        return this;
+        return member.children != null && member.children.containsKey(path.substring(dot + 1));
     }
 
-    @Override
-    public String get(String key, String def)
+    private static String path(String parent, String name)
     {
-        return get(key, def, String.class);
+        return parent.isEmpty() ? name : parent + "." + name;
     }
 
-    @Override
-    public <T> T get(String key, T def, Class<T> type)
+    /**
+     * Replace the whole config by a new version, which must then
+     * be fully saved
+     */
+    private void publish(JsonObject root)
     {
-        T value = gson.fromJson(config.get(key), type);
-        return value == null ? def : value;
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            Map<String, JsonElement> index = snapshots ? new TrieIndex() : new ConcurrentHashMap<>();
+            index(index, root);
+
+            // Published before dropping the cached values, see at(String, Object, Type)
+            version = new Version(root, index);
+            cache.clear();
+
+            dirty.clear();
+            rewrite = true;
+        }
+        finally
+        {
+            write.unlock();
+        }
     }
 
-    @Override
-    public void set(String key, String value)
+    private JsonObject readCompiled(File file)
     {
-        set(key, (Object) value);
+        CompiledCache compiled = new CompiledCache(file, CompiledCache.JSON);
+        ByteBuffer buffer = compiled.open();
+
+        if (buffer != null)
+        {
+            try
+            {
+                return CompiledCache.readTree(buffer).getAsJsonObject();
+            }
+            catch (RuntimeException ignored)
+            {
+                // Corrupted cache, it is rewritten below
+            }
+        }
+
+        JsonObject config = read(this.file);
+        compiled.write(out -> CompiledCache.writeTree(out, config));
+
+        return config;
     }
 
-    @Override
-    public void set(String key, Object value)
+    private JsonObject scan(IOSource source)
     {
-        if (key.contains("."))
+        Map<String, Member> members;
+
+        try (InputStream in = source.provideInput())
         {
-            try
+            members = new JsonScanner(in, Charset.defaultCharset()).scan(lazyDepth);
+        }
+        catch (MalformedJsonException e)
+        {
+            // The scanner only understands strict JSON, the parser is more lenient
+            lazy = null;
+
+            return read(source);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't read config", e);
+        }
+
+        JsonObject root = new JsonObject();
+        Map<String, Member> pending = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Member> entry : members.entrySet())
+        {
+            Member member = entry.getValue();
+
+            if (member.children == null)
             {
-                String[] split = key.split("\\.");
-                JsonObject object = config;
+                root.add(entry.getKey(), JsonNull.INSTANCE);
+                pending.put(entry.getKey(), member);
 
-                for (int i = 0; i < split.length - 1; i++)
-                {
-                    String str = split[i];
+                continue;
+            }
 
-                    if (!object.has(str))
-                    {
-                        object.add(str, new JsonObject());
-                    }
+            JsonObject object = new JsonObject();
+            member.children.keySet().forEach(name -> object.add(name, JsonNull.INSTANCE));
 
-                    object = object.getAsJsonObject(str);
-                }
+            root.add(entry.getKey(), object);
+
+            if (!member.children.isEmpty())
+            {
+                pending.put(entry.getKey(), member);
+            }
+        }
+
+        if (source instanceof FileSource)
+        {
+            File file = ((FileSource) source).getFile();
+
+            lazyLength = file.length();
+            lazyModified = file.lastModified();
+        }
+
+        lazySource = source;
+        lazy = pending.isEmpty() ? null : pending;
 
-                object.add(split[split.length - 1], gson.toJsonTree(value));
+        return root;
+    }
+
+    /**
+     * Parse the members of the given path that were not read yet
+     * because of the lazy loading, and replace their placeholders
+     *
+     * @param path The path that is going to be accessed
+     */
+    private void materialize(String path)
+    {
+        if (lazy == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            Map<String, Member> lazy = this.lazy;
+
+            if (lazy == null)
+            {
+                return;
             }
-            catch (JsonParseException ignored)
+
+            materialize(lazy, path);
+
+            if (lazy.isEmpty())
             {
+                this.lazy = null;
             }
         }
+    }
+
+    private void materialize(Map<String, Member> lazy, String path)
+    {
+        int dot = path.indexOf('.');
+        String name = dot == -1 ? path : path.substring(0, dot);
+        Member member = lazy.get(name);
+
+        if (member == null)
+        {
+            return;
+        }
+
+        JsonObject config = version.root;
+
+        // Parsed first, the placeholders are then replaced blocking the writers of the tree
+        if (member.children == null)
+        {
+            JsonElement parsed = parse(member);
+
+            exclusively(() -> replace(config, name, name, parsed));
+            lazy.remove(name);
+        }
+        else if (dot == -1)
+        {
+            JsonObject parsed = parse(member).getAsJsonObject();
+
+            exclusively(() -> {
+                JsonObject object = config.getAsJsonObject(name);
+
+                for (String child : member.children.keySet())
+                {
+                    replace(object, child, name + "." + child, parsed.get(child));
+                }
+            });
+
+            lazy.remove(name);
+        }
         else
         {
-            config.add(key, gson.toJsonTree(value));
+            int end = path.indexOf('.', dot + 1);
+            String child = path.substring(dot + 1, end == -1 ? path.length() : end);
+            Member childMember = member.children.remove(child);
+
+            if (childMember != null)
+            {
+                JsonElement parsed = parse(childMember);
+                exclusively(() -> replace(config.getAsJsonObject(name), child, name + "." + child, parsed));
+            }
+
+            if (member.children.isEmpty())
+            {
+                lazy.remove(name);
+            }
         }
+    }
 
-        if (autoSave)
+    /**
+     * Decode a value of the config, see {@link #locked(String, Supplier)}
+     */
+    private <T> T decode(String path, JsonElement element, Type type)
+    {
+        if (element == null || element.isJsonPrimitive() || element.isJsonNull())
         {
-            save();
+            return registry.fromJson(element, type);
         }
+
+        return locked(path, () -> registry.fromJson(element, type));
     }
 
-    @Override
-    public <T> T at(String path, T def, Class<T> type)
+    /**
+     * Read a value of the tree of the config. Out of the snapshot
+     * mode, objects and arrays are modified in place by the writers
+     * of their section, so they are read holding the lock of the
+     * section, and the read lock of the root.
+     *
+     * @param path The path of the read value
+     * @param reader The reading of the value
+     *
+     * @return What was read
+     */
+    private <T> T locked(String path, Supplier<T> reader)
     {
-        try
+        if (snapshots)
         {
-            String[] split = path.split("\\.");
-            JsonElement el = config;
+            return reader.get();
+        }
 
-            for (int i = 0; i < split.length - 1; i++)
+        Lock read = rootLock.readLock();
+        read.lock();
+
+        try
+        {
+            synchronized (stripe(section(path)))
             {
-                el = el.getAsJsonObject().get(split[i]);
+                return reader.get();
+            }
+        }
+        finally
+        {
+            read.unlock();
+        }
+    }
 
-                if (el == null)
-                {
-                    return null;
-                }
+    /**
+     * Modify the tree of the current version in place, blocking every
+     * writer (in place writers hold the read lock of the root)
+     */
+    private void exclusively(Runnable modification)
+    {
+        Lock write = rootLock.writeLock();
+        write.lock();
 
-                if (!el.isJsonObject())
-                {
-                    throw new IllegalArgumentException("Field '" + split[i] + "' isn't an object");
-                }
+        try
+        {
+            modification.run();
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * @return A deep copy of the tree of the current version, made
+     *         while no writer modifies it
+     */
+    private JsonObject copyRoot()
+    {
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            return copy(version.root).getAsJsonObject();
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    private synchronized void materializeAll()
+    {
+        if (lazy != null)
+        {
+            new ArrayList<>(lazy.keySet()).forEach(this::materialize);
+        }
+    }
+
+    private void replace(JsonObject parent, String name, String path, JsonElement element)
+    {
+        Map<String, JsonElement> index = version.index;
+
+        parent.add(name, element);
+
+        // Members with a '.' in their name (or in one of their parents') are not indexed
+        if (index.get(path) == JsonNull.INSTANCE)
+        {
+            index(index, path, element);
+        }
+    }
+
+    private JsonElement parse(Member member)
+    {
+        try (Reader reader = open(member))
+        {
+            return new JsonParser().parse(reader);
+        }
+        catch (IOException | JsonIOException e)
+        {
+            throw new RuntimeException("Can't read config", e);
+        }
+    }
+
+    private Reader open(Member member) throws IOException
+    {
+        if (lazySource instanceof FileSource)
+        {
+            File file = ((FileSource) lazySource).getFile();
+
+            if (file.length() != lazyLength || file.lastModified() != lazyModified)
+            {
+                throw new IllegalStateException("Config file was modified since it was lazily loaded, it must be reloaded");
             }
+        }
 
-            return gson.fromJson(el.getAsJsonObject().get(split[split.length - 1]), type);
+        InputStream in = lazySource.provideInput();
+
+        try
+        {
+            IOUtils.skipFully(in, member.start);
         }
-        catch (JsonParseException e)
+        catch (IOException e)
+        {
+            in.close();
+            throw e;
+        }
+
+        return new BufferedReader(new InputStreamReader(new BoundedInputStream(in, member.end - member.start), Charset.defaultCharset()));
+    }
+
+    private JsonObject read(IOSource source)
+    {
+        try (Reader reader = new BufferedReader(new InputStreamReader(source.provideInput(), Charset.defaultCharset())))
         {
-            return def;
+            return new JsonParser().parse(reader).getAsJsonObject();
+        }
+        catch (IOException | JsonIOException e)
+        {
+            throw new RuntimeException("Can't read config", e);
         }
     }
 
+    /**
+     * Only the top-level sections modified since the last save are
+     * marked as dirty : if none is, and the file wasn't replaced or
+     * loaded from another source since, it already holds the changes
+     * and isn't written again.
+     */
     @Override
-    public boolean areObjectsSupported()
+    protected synchronized void saveChanges()
     {
-        return true;
+        if (!rewrite && dirty.isEmpty() && file.exists())
+        {
+            return;
+        }
+
+        save();
+    }
+
+    @Override
+    public synchronized FileConfig save()
+    {
+        // The source is going to be overwritten, lazy members must be read before
+        materializeAll();
+
+        Map<String, JsonElement> written;
+
+        synchronized (pending)
+        {
+            written = new HashMap<>(pending);
+        }
+
+        writeFile(this::writeRoot);
+
+        // Values set during the save are kept for the next one
+        written.forEach(pending::remove);
+
+        return this;
+    }
+
+    /**
+     * Remember a value set since the last save, in multi-process mode,
+     * to set it again if the file is saved by another process meanwhile
+     */
+    private void pend(String path, JsonElement element)
+    {
+        if (isShared())
+        {
+            // Moved to the end, so it is applied after the values of its parents
+            pending.remove(path);
+            pending.put(path, element);
+        }
+    }
+
+    /**
+     * Read the file again, with the values set since the last save
+     */
+    @Override
+    protected synchronized void rebase()
+    {
+        JsonObject root = read(file);
+        Set<JsonElement> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        copies.add(root);
+
+        synchronized (pending)
+        {
+            pending.forEach((path, element) -> put(root, new HashMap<>(), copies, path, element));
+        }
+
+        update(root);
+    }
+
+    private void writeRoot()
+    {
+        Gson gson = registry.getGson();
+
+        Lock read = rootLock.readLock();
+        read.lock();
+
+        // Members of the root are only added or removed under the write lock, so the iteration is safe
+        try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(file.provideOutput(), Charset.defaultCharset()))))
+        {
+            writer.setIndent(compact ? "" : "  ");
+            writer.beginObject();
+
+            for (Map.Entry<String, JsonElement> entry : version.root.entrySet())
+            {
+                // Its writers are blocked while it is written, the other sections can still be modified
+                synchronized (stripe(entry.getKey()))
+                {
+                    dirty.remove(entry.getKey());
+
+                    writer.name(entry.getKey());
+                    gson.toJson(entry.getValue(), writer);
+                }
+            }
+
+            writer.endObject();
+            rewrite = false;
+        }
+        catch (IOException | JsonIOException e)
+        {
+            rewrite = true;
+            throw new RuntimeException("Can't save the config", e);
+        }
+        finally
+        {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public synchronized FileConfig defaultIn(IOSource source)
+    {
+        if (file.exists())
+        {
+            return this;
+        }
+
+        if (!source.exists())
+        {
+            throw new RuntimeException("Default file doesn't exist");
+        }
+
+        JsonObject previous = version.root;
+        JsonObject root = read(source);
+        Map<String, Member> previousLazy = lazy;
+
+        lazy = null;
+        publish(root);
+        listeners.fire("", previous, root, children(previous, previousLazy), this::copy);
+
+        save();
+
+        return this;
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        return get(key, def, String.class);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Class<T> type)
+    {
+        return get(key, def, (Type) type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, T def, Type type)
+    {
+        // A dotted key is a member name here, not a path, so it can't share the cache with at()
+        if (key.indexOf('.') != -1)
+        {
+            materializeAll();
+
+            T value = locked(key, () -> registry.fromJson(version.root.get(key), type));
+            return value == null ? def : value;
+        }
+
+        Object cached = cache.lookup(key, type);
+
+        if (cached != ValueCache.NOT_CACHED)
+        {
+            return cached == null ? def : (T) cached;
+        }
+
+        long stamp = cache.stamp();
+        Version version = this.version;
+
+        materialize(key);
+
+        T value = decode(key, version.index.get(key), type);
+
+        // Mutable objects are decoded again for each caller, so one modifying its copy doesn't affect the others
+        if (ValueCache.isImmutable(value))
+        {
+            cache.store(key, type, value, stamp);
+        }
+
+        return value == null ? def : value;
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        set(key, (Object) value);
+    }
+
+    /**
+     * Set a value of the config.<br><br>
+     *
+     * Values of different top-level sections can be set by several
+     * threads at once, only the values of a same section are set one
+     * at a time. Adding a top-level member blocks every writer.
+     *
+     * @param key The path of the value to set
+     * @param value The value to set
+     *
+     * @throws IllegalArgumentException If one of the parents of the value isn't an object
+     */
+    @Override
+    public void set(String key, Object value)
+    {
+        materialize(key);
+
+        JsonElement element = registry.toJsonTree(value);
+
+        JsonElement[] previous = new JsonElement[1];
+
+        if (snapshots)
+        {
+            synchronized (this)
+            {
+                previous[0] = version.index.get(key);
+                publish(key, element);
+            }
+        }
+        else
+        {
+            write(key, () -> {
+                Version version = this.version;
+                Map<String, JsonElement> index = version.index;
+                int dot = key.lastIndexOf('.');
+
+                JsonObject parent = dot == -1 ? version.root : object(key.substring(0, dot));
+                previous[0] = parent.get(key.substring(dot + 1));
+
+                if (previous[0] != null)
+                {
+                    unindex(index, key, previous[0]);
+                }
+
+                parent.add(key.substring(dot + 1), element);
+                index(index, key, element);
+                list(version.keys, key, element);
+
+                cache.invalidate(key);
+            });
+        }
+
+        pend(key, element);
+
+        listeners.fire(key, previous[0], element, CHILDREN, this::copy);
+        changed();
+    }
+
+    /**
+     * Modify the section of the given path in place, holding only
+     * the lock of the section if it already exists, or blocking every
+     * writer if it is going to be added (or replaced) in the root object
+     *
+     * @param path The path of the modified value
+     * @param modification The modification to make
+     */
+    private void write(String path, Runnable modification)
+    {
+        int dot = path.indexOf('.');
+        String section = section(path);
+
+        Lock read = rootLock.readLock();
+        read.lock();
+
+        try
+        {
+            if (dot != -1 && version.root.has(section))
+            {
+                synchronized (stripe(section))
+                {
+                    modification.run();
+                    dirty.add(section);
+                }
+
+                return;
+            }
+        }
+        finally
+        {
+            read.unlock();
+        }
+
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            modification.run();
+            dirty.add(section);
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    private Object stripe(String section)
+    {
+        int hash = section.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Publish a new version of the config with the given value,
+     * copying the objects containing it and sharing the others
+     * with the current version
+     *
+     * @param path The path of the value
+     * @param element The new value
+     *
+     * @throws IllegalArgumentException If one of the parents of the value isn't an object
+     */
+    private void publish(String path, JsonElement element)
+    {
+        this.version = apply(version, Collections.singletonMap(path, element));
+
+        cache.invalidate(path);
+        dirty.add(section(path));
+    }
+
+    /**
+     * Create a new version of the config with the given changes.
+     * The objects containing the changed values are copied, the
+     * others are shared with the given version. In snapshot mode the
+     * index of the paths is persistent, so only the parts of it leading
+     * to the changed paths are copied. The ordered index of the keys
+     * is built again when it is next needed.<br><br>
+     *
+     * The cached values of the changed paths must be dropped once
+     * the new version is published.
+     *
+     * @param base The version to change
+     * @param changes The new value of each changed path, or null if it was removed
+     *
+     * @return The new version
+     *
+     * @throws IllegalArgumentException If one of the parents of a value isn't an object
+     */
+    private static Version apply(Version base, Map<String, JsonElement> changes)
+    {
+        Map<String, JsonElement> index = base.index instanceof TrieIndex ? new TrieIndex((TrieIndex) base.index) : new ConcurrentHashMap<>(base.index);
+        Set<JsonElement> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+        JsonObject root = shallowCopy(base.root);
+
+        copies.add(root);
+
+        for (Map.Entry<String, JsonElement> change : changes.entrySet())
+        {
+            put(root, index, copies, change.getKey(), change.getValue());
+        }
+
+        return new Version(root, index);
+    }
+
+    private static void put(JsonObject root, Map<String, JsonElement> index, Set<JsonElement> copies, String path, JsonElement element)
+    {
+        JsonObject parent = root;
+        int start = 0;
+        int dot;
+
+        while ((dot = path.indexOf('.', start)) != -1)
+        {
+            String name = path.substring(start, dot);
+            JsonElement child = parent.get(name);
+
+            if (element == null && (child == null || !child.isJsonObject()))
+            {
+                // Nothing to remove
+                return;
+            }
+
+            if (child != null && !child.isJsonObject())
+            {
+                throw new IllegalArgumentException("Field '" + path.substring(0, dot) + "' isn't an object");
+            }
+
+            JsonObject copy = child == null ? new JsonObject() : copies.contains(child) ? child.getAsJsonObject() : shallowCopy(child.getAsJsonObject());
+
+            copies.add(copy);
+            parent.add(name, copy);
+            index.put(path.substring(0, dot), copy);
+
+            parent = copy;
+            start = dot + 1;
+        }
+
+        String name = path.substring(start);
+        JsonElement previous = element == null ? parent.remove(name) : parent.get(name);
+
+        if (previous != null)
+        {
+            unindex(index, path, previous);
+        }
+
+        if (element != null)
+        {
+            parent.add(name, element);
+            index(index, path, element);
+        }
+    }
+
+    private static String section(String path)
+    {
+        int dot = path.indexOf('.');
+        return dot == -1 ? path : path.substring(0, dot);
+    }
+
+    private static JsonObject shallowCopy(JsonObject object)
+    {
+        JsonObject copy = new JsonObject();
+
+        for (Map.Entry<String, JsonElement> entry : object.entrySet())
+        {
+            copy.add(entry.getKey(), entry.getValue());
+        }
+
+        return copy;
+    }
+
+    @Override
+    public synchronized <T> T[] append(String field, Class<T[]> classOfArray, T toAppend)
+    {
+        append(field, toAppend);
+        return at(field, classOfArray);
+    }
+
+    @Override
+    public void append(String field, Object toAppend)
+    {
+        appendAll(field, Collections.singletonList(toAppend));
+    }
+
+    /**
+     * Append several objects to an array of the config at once.<br>
+     * The array is modified in place and, if auto save is enabled,
+     * the config is saved once.
+     *
+     * @param field The path (see {@link #at(String)}) of the array, it is
+     *              created if it doesn't exist
+     * @param toAppend The objects to append
+     *
+     * @throws IllegalArgumentException If the field isn't an array
+     */
+    @Override
+    public void appendAll(String field, Collection<?> toAppend)
+    {
+        materialize(field);
+
+        List<JsonElement> elements = new ArrayList<>(toAppend.size());
+        toAppend.forEach(value -> elements.add(registry.toJsonTree(value)));
+
+        JsonElement[] previous = new JsonElement[1];
+        JsonArray[] result = new JsonArray[1];
+
+        if (snapshots)
+        {
+            synchronized (this)
+            {
+                JsonElement element = version.index.get(field);
+                JsonArray array = new JsonArray();
+
+                if (element != null && !element.isJsonNull())
+                {
+                    if (!element.isJsonArray())
+                    {
+                        throw new IllegalArgumentException("Field '" + field + "' isn't an array");
+                    }
+
+                    array.addAll(element.getAsJsonArray());
+                }
+
+                elements.forEach(array::add);
+                publish(field, array);
+
+                previous[0] = element;
+                result[0] = array;
+            }
+        }
+        else
+        {
+            write(field, () -> {
+                JsonArray array = array(field);
+
+                if (!listeners.isEmpty())
+                {
+                    // The array is modified in place, the listeners need a copy of its previous state
+                    JsonArray copy = new JsonArray();
+                    copy.addAll(array);
+
+                    previous[0] = copy;
+                }
+
+                elements.forEach(array::add);
+                cache.invalidate(field);
+
+                result[0] = array;
+            });
+        }
+
+        pend(field, result[0]);
+
+        listeners.fire(field, previous[0], result[0], CHILDREN, this::copy);
+        changed();
+    }
+
+    private JsonArray array(String path)
+    {
+        Version version = this.version;
+        JsonElement element = version.index.get(path);
+
+        if (element == null || element.isJsonNull())
+        {
+            int dot = path.lastIndexOf('.');
+
+            JsonObject parent = dot == -1 ? version.root : object(path.substring(0, dot));
+            JsonArray array = new JsonArray();
+
+            parent.add(path.substring(dot + 1), array);
+            version.index.put(path, array);
+            list(version.keys, path, array);
+
+            return array;
+        }
+
+        if (!element.isJsonArray())
+        {
+            throw new IllegalArgumentException("Field '" + path + "' isn't an array");
+        }
+
+        return element.getAsJsonArray();
+    }
+
+    private JsonObject object(String path)
+    {
+        Version version = this.version;
+        JsonElement element = version.index.get(path);
+
+        if (element == null)
+        {
+            int dot = path.lastIndexOf('.');
+
+            JsonObject parent = dot == -1 ? version.root : object(path.substring(0, dot));
+            JsonObject object = new JsonObject();
+
+            parent.add(path.substring(dot + 1), object);
+            version.index.put(path, object);
+
+            return object;
+        }
+
+        if (!element.isJsonObject())
+        {
+            throw new IllegalArgumentException("Field '" + path + "' isn't an object");
+        }
+
+        return element.getAsJsonObject();
+    }
+
+    /**
+     * Stream the elements of an array of the config, decoding them
+     * one at a time.<br><br>
+     *
+     * If the array wasn't read yet because of the lazy loading
+     * (see {@link #lazy(int)}), its elements are read one at a time
+     * from the source instead of being all loaded first, the stream
+     * should then be closed if it isn't fully consumed.<br><br>
+     *
+     * The stream can be parallel, elements are then decoded by
+     * several threads.
+     *
+     * Example :
+     * <pre>
+     *     try (Stream&lt;Rule&gt; rules = config.stream("routing.rules", Rule.class))
+     *     {
+     *         rules.filter(Rule::isEnabled).forEach(router::add);
+     *     }
+     * </pre>
+     *
+     * @param path The path of the array (see {@link #at(String)})
+     * @param type The type of the elements
+     *
+     * @param <T> The type of the elements
+     *
+     * @return A stream of the decoded elements, empty if the array wasn't found
+     *
+     * @throws IllegalArgumentException If the value at the given path isn't an array
+     */
+    public <T> Stream<T> stream(String path, Class<T> type)
+    {
+        return stream(path, (Type) type);
+    }
+
+    /**
+     * Stream the elements of an array of the config, decoding them
+     * one at a time. See {@link #stream(String, Class)}.
+     *
+     * @param path The path of the array (see {@link #at(String)})
+     * @param type The type of the elements
+     *
+     * @param <T> The type of the elements
+     *
+     * @return A stream of the decoded elements, empty if the array wasn't found
+     *
+     * @throws IllegalArgumentException If the value at the given path isn't an array
+     */
+    public <T> Stream<T> stream(String path, Type type)
+    {
+        return elements(path).map(element -> registry.<T>fromJson(element, type));
+    }
+
+    private Stream<JsonElement> elements(String path)
+    {
+        Reader reader = null;
+        String rest = null;
+
+        synchronized (this)
+        {
+            Map<String, Member> lazy = this.lazy;
+
+            if (lazy != null)
+            {
+                int dot = path.indexOf('.');
+                Member member = lazy.get(dot == -1 ? path : path.substring(0, dot));
+
+                if (member != null && member.children != null && dot != -1)
+                {
+                    int end = path.indexOf('.', dot + 1);
+
+                    member = member.children.get(path.substring(dot + 1, end == -1 ? path.length() : end));
+                    dot = end;
+                }
+
+                if (member != null && member.children == null)
+                {
+                    rest = dot == -1 ? null : path.substring(dot + 1);
+
+                    try
+                    {
+                        reader = open(member);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new RuntimeException("Can't read config", e);
+                    }
+                }
+            }
+        }
+
+        if (reader == null)
+        {
+            materialize(path);
+
+            JsonElement element = version.index.get(path);
+
+            if (element == null)
+            {
+                return Stream.empty();
+            }
+
+            if (!element.isJsonArray())
+            {
+                throw new IllegalArgumentException("Field '" + path + "' isn't an array");
+            }
+
+            // Copied, as it can be modified in place while the stream is consumed
+            JsonArray array = locked(path, () -> copy(element).getAsJsonArray());
+            return IntStream.range(0, array.size()).mapToObj(array::get);
+        }
+
+        JsonReader json = new JsonReader(reader);
+
+        try
+        {
+            if (!find(json, rest))
+            {
+                json.close();
+                return Stream.empty();
+            }
+
+            if (json.peek() != JsonToken.BEGIN_ARRAY)
+            {
+                throw new IllegalArgumentException("Field '" + path + "' isn't an array");
+            }
+
+            json.beginArray();
+        }
+        catch (IOException e)
+        {
+            IOUtils.closeQuietly(json);
+            throw new RuntimeException("Can't read config", e);
+        }
+        catch (RuntimeException e)
+        {
+            IOUtils.closeQuietly(json);
+            throw e;
+        }
+
+        JsonParser parser = new JsonParser();
+        Spliterator<JsonElement> elements = new Spliterators.AbstractSpliterator<JsonElement>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL)
+        {
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super JsonElement> action)
+            {
+                if (done)
+                {
+                    return false;
+                }
+
+                try
+                {
+                    if (!json.hasNext())
+                    {
+                        done = true;
+                        json.close();
+
+                        return false;
+                    }
+
+                    action.accept(parser.parse(json));
+                    return true;
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException("Can't read config", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(elements, false).onClose(() -> IOUtils.closeQuietly(json));
+    }
+
+    /**
+     * Move a reader to the value at the given path
+     *
+     * @param reader The reader, before the object containing the path
+     * @param path The path to find, or null to stay where it is
+     *
+     * @return If the value was found
+     */
+    private static boolean find(JsonReader reader, String path) throws IOException
+    {
+        int start = 0;
+
+        while (path != null && start <= path.length())
+        {
+            int end = path.indexOf('.', start);
+            String name = path.substring(start, end == -1 ? path.length() : end);
+
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                return false;
+            }
+
+            reader.beginObject();
+
+            while (true)
+            {
+                if (!reader.hasNext())
+                {
+                    return false;
+                }
+
+                if (reader.nextName().equals(name))
+                {
+                    break;
+                }
+
+                reader.skipValue();
+            }
+
+            if (end == -1)
+            {
+                break;
+            }
+
+            start = end + 1;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String at(String path, String def)
+    {
+        return at(path, def, String.class);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Class<T> type)
+    {
+        return at(path, def, (Type) type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T at(String path, T def, Type type)
+    {
+        Object cached = cache.lookup(path, type);
+
+        if (cached != ValueCache.NOT_CACHED)
+        {
+            return cached == null ? def : (T) cached;
+        }
+
+        // Read before the version : writers publish a version before dropping the cached values
+        long stamp = cache.stamp();
+        Version version = this.version;
+
+        materialize(path);
+
+        T value;
+
+        try
+        {
+            value = decode(path, version.index.get(path), type);
+        }
+        catch (JsonParseException e)
+        {
+            value = null;
+        }
+
+        // Like in get(), mutable objects aren't shared
+        if (ValueCache.isImmutable(value))
+        {
+            cache.store(path, type, value, stamp);
+        }
+
+        return value == null ? def : value;
+    }
+
+    /**
+     * Lists the paths of the values that aren't objects. Members
+     * whose name contains a '.' aren't listed, as they can't be read
+     * with {@link #at(String)}.
+     */
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        return Keys.range(keys(), prefix);
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        Version version = this.version;
+        NavigableSet<String> keys = keys();
+
+        if (keys.contains(prefix))
+        {
+            consumer.accept(prefix, string(prefix, version.index.get(prefix)));
+        }
+
+        for (String key : prefix.isEmpty() ? keys : keys.subSet(prefix + ".", true, prefix + "/", false))
+        {
+            JsonElement element = version.index.get(key);
+
+            // Removed since the keys were read
+            if (element != null)
+            {
+                consumer.accept(key, string(key, element));
+            }
+        }
+    }
+
+    private String string(String path, JsonElement element)
+    {
+        if (element == null || element.isJsonNull())
+        {
+            return null;
+        }
+
+        return element.isJsonPrimitive() ? element.getAsString() : locked(path, element::toString);
+    }
+
+    /**
+     * @return The ordered index of the keys of the current version, built if needed
+     */
+    private NavigableSet<String> keys()
+    {
+        NavigableSet<String> keys = version.keys;
+
+        if (keys != null)
+        {
+            return keys;
+        }
+
+        materializeAll();
+
+        // Blocks the writers modifying the version in place while listing its paths
+        Lock lock = rootLock.writeLock();
+        lock.lock();
+
+        try
+        {
+            Version version = this.version;
+
+            if (version.keys == null)
+            {
+                NavigableSet<String> built = new ConcurrentSkipListSet<>();
+
+                version.index.forEach((path, element) -> {
+                    if (!element.isJsonObject())
+                    {
+                        built.add(path);
+                    }
+                });
+
+                version.keys = built;
+            }
+
+            return version.keys;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean has(String path)
+    {
+        materialize(path);
+
+        JsonElement element = version.index.get(path);
+        return element != null && !element.isJsonNull();
+    }
+
+    @Override
+    public int getInt(String key, int def)
+    {
+        PrimitiveValue value = key.indexOf('.') == -1 ? primitive(key) : member(key);
+        return value == null ? def : value.getInt(def);
+    }
+
+    @Override
+    public int atInt(String path, int def)
+    {
+        PrimitiveValue value = primitive(path);
+        return value == null ? def : value.getInt(def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        PrimitiveValue value = key.indexOf('.') == -1 ? primitive(key) : member(key);
+        return value == null ? def : value.getLong(def);
+    }
+
+    @Override
+    public long atLong(String path, long def)
+    {
+        PrimitiveValue value = primitive(path);
+        return value == null ? def : value.getLong(def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        PrimitiveValue value = key.indexOf('.') == -1 ? primitive(key) : member(key);
+        return value == null ? def : value.getDouble(def);
+    }
+
+    @Override
+    public double atDouble(String path, double def)
+    {
+        PrimitiveValue value = primitive(path);
+        return value == null ? def : value.getDouble(def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        PrimitiveValue value = key.indexOf('.') == -1 ? primitive(key) : member(key);
+        return value == null ? def : value.getBoolean(def);
+    }
+
+    @Override
+    public boolean atBoolean(String path, boolean def)
+    {
+        PrimitiveValue value = primitive(path);
+        return value == null ? def : value.getBoolean(def);
+    }
+
+    /**
+     * Parse a primitive value once, and keep it in the value cache
+     * so reading it again doesn't parse or allocate anything
+     *
+     * @return The value at the path parsed as primitives, or null if it isn't a primitive
+     */
+    private PrimitiveValue primitive(String path)
+    {
+        Object cached = cache.lookup(path, PrimitiveValue.class);
+
+        if (cached != ValueCache.NOT_CACHED)
+        {
+            return (PrimitiveValue) cached;
+        }
+
+        long stamp = cache.stamp();
+        Version version = this.version;
+
+        materialize(path);
+
+        PrimitiveValue value = parse(version.index.get(path));
+        cache.store(path, PrimitiveValue.class, value, stamp);
+
+        return value;
+    }
+
+    /**
+     * @return The member of the root with a dotted name parsed as primitives, see {@link #get(String, Object, Type)}
+     */
+    private PrimitiveValue member(String key)
+    {
+        materializeAll();
+        return locked(key, () -> parse(version.root.get(key)));
+    }
+
+    private static PrimitiveValue parse(JsonElement element)
+    {
+        return element != null && element.isJsonPrimitive() ? PrimitiveValue.parse(element.getAsString()) : null;
+    }
+
+    /**
+     * Reload the config from its file, replacing only the values
+     * that changed in it, so only their cached values are dropped.
+     * Values whose member names contain a '.' can't be replaced
+     * alone, their parent object is replaced instead.
+     */
+    @Override
+    protected synchronized void reload()
+    {
+        if (lazyDepth > 0 && !snapshots)
+        {
+            // Lazy members can't be compared without reading them from the previous file
+            load();
+            return;
+        }
+
+        update(compiledCache && file instanceof FileSource ? readCompiled(((FileSource) file).getFile()) : read(file));
+    }
+
+    /**
+     * Replace only the values that differ from the given root
+     *
+     * @param root The new root object
+     */
+    private void update(JsonObject root)
+    {
+        Map<String, JsonElement> changes = new LinkedHashMap<>();
+        Version previous = version;
+
+        if (!diff("", previous.root, root, changes))
+        {
+            publish(root);
+            listeners.fire("", previous.root, root, CHILDREN, this::copy);
+
+            return;
+        }
+
+        if (changes.isEmpty())
+        {
+            return;
+        }
+
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            version = apply(version, changes);
+
+            changes.keySet().forEach(path -> {
+                cache.invalidate(path);
+                dirty.add(section(path));
+            });
+        }
+        finally
+        {
+            write.unlock();
+        }
+
+        changes.forEach((path, value) -> listeners.fire(path, previous.index.get(path), value, CHILDREN, this::copy));
+    }
+
+    /**
+     * Find the values that differ between two objects
+     *
+     * @param path The path of the objects, empty for the root
+     * @param before The previous object
+     * @param after The new object
+     * @param changes The map to put the new value of each changed path in, null if it was removed
+     *
+     * @return False if the objects differ by a member that can't be reached using a path
+     */
+    private static boolean diff(String path, JsonObject before, JsonObject after, Map<String, JsonElement> changes)
+    {
+        String prefix = path.isEmpty() ? "" : path + ".";
+
+        for (Map.Entry<String, JsonElement> entry : before.entrySet())
+        {
+            if (!after.has(entry.getKey()))
+            {
+                if (entry.getKey().indexOf('.') != -1)
+                {
+                    return false;
+                }
+
+                changes.put(prefix + entry.getKey(), null);
+            }
+        }
+
+        for (Map.Entry<String, JsonElement> entry : after.entrySet())
+        {
+            JsonElement previous = before.get(entry.getKey());
+            JsonElement value = entry.getValue();
+
+            if (value.equals(previous))
+            {
+                continue;
+            }
+
+            if (entry.getKey().indexOf('.') != -1)
+            {
+                return false;
+            }
+
+            String child = prefix + entry.getKey();
+
+            if (previous == null || !previous.isJsonObject() || !value.isJsonObject() || !diff(child, previous.getAsJsonObject(), value.getAsJsonObject(), changes))
+            {
+                changes.put(child, value);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Edit the config, blocking every other writer until the edition
+     * is done (see {@link FileConfig#edit(Consumer)})
+     *
+     * @param edition The changes to make on the config
+     *
+     * @return This
+     */
+    @Override
+    public synchronized FileConfig edit(Consumer<Config> edition)
+    {
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            return super.edit(edition);
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Make an immutable copy of the config, indexed by every
+     * path (see {@link FrozenConfig}). Lazy members are all read.
+     *
+     * @return The frozen copy of the config
+     */
+    @Override
+    public synchronized FrozenConfig freeze()
+    {
+        materializeAll();
+
+        Map<String, JsonElement> index = new HashMap<>();
+        index(index, copyRoot());
+
+        return FrozenConfig.json(index, registry);
+    }
+
+    /**
+     * @return A copy of the whole tree of the config, without decoding anything
+     */
+    synchronized JsonObject tree()
+    {
+        materializeAll();
+        return copyRoot();
+    }
+
+    /**
+     * Copy a value given to the asynchronous listeners (see {@link ConfigListeners.Copier}),
+     * blocking the writers of its section, so the copy isn't made
+     * while the value is modified in place
+     */
+    private Object copy(String path, Object value)
+    {
+        JsonElement element = (JsonElement) value;
+
+        if (element.isJsonPrimitive() || element.isJsonNull())
+        {
+            return element;
+        }
+
+        if (path.isEmpty())
+        {
+            Lock write = rootLock.writeLock();
+            write.lock();
+
+            try
+            {
+                return copy(element);
+            }
+            finally
+            {
+                write.unlock();
+            }
+        }
+
+        return locked(path, () -> copy(element));
+    }
+
+    private static JsonElement copy(JsonElement element)
+    {
+        if (element.isJsonObject())
+        {
+            JsonObject copy = new JsonObject();
+
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+            {
+                copy.add(entry.getKey(), copy(entry.getValue()));
+            }
+
+            return copy;
+        }
+
+        if (element.isJsonArray())
+        {
+            JsonArray copy = new JsonArray();
+
+            for (JsonElement child : element.getAsJsonArray())
+            {
+                copy.add(copy(child));
+            }
+
+            return copy;
+        }
+
+        // Primitives and null can't be modified
+        return element;
+    }
+
+    /**
+     * Enable or disable compact saving. A compact config is saved
+     * without any indentation or line break, which is smaller and
+     * faster to write, for files that aren't meant to be read.
+     *
+     * @param compact If the config should be saved compact
+     *
+     * @return This
+     */
+    public JSONConfig compact(boolean compact)
+    {
+        this.compact = compact;
+        this.rewrite = true;
+
+        return this;
+    }
+
+    /**
+     * @return If the config is saved without indentation
+     */
+    public boolean isCompact()
+    {
+        return compact;
+    }
+
+    /**
+     * Enable lazy loading for the next loads.<br><br>
+     *
+     * A lazily loaded config only finds where the members of the
+     * root object (and of its children objects, depending on the
+     * depth) are in the source, and parses each of them only when
+     * it is first accessed. This is faster and lighter for big
+     * configs of which only a part is used.<br><br>
+     *
+     * The source must not be modified until every member was read,
+     * saving the config reads all of them. Only strict JSON, in a
+     * charset like UTF-8, can be loaded lazily, other configs are
+     * loaded fully.<br><br>
+     *
+     * Example :
+     * <pre>
+     *     JSONConfig config = new JSONConfig();
+     *     config.lazy(1).in(file).load();
+     * </pre>
+     *
+     * @param depth The number of object levels to load lazily (1 for only the
+     *              members of the root object, 2 for their members too),
+     *              0 to disable
+     *
+     * @return This
+     */
+    public JSONConfig lazy(int depth)
+    {
+        if (depth < 0 || depth > 2)
+        {
+            throw new IllegalArgumentException("Lazy loading depth must be between 0 and 2");
+        }
+
+        this.lazyDepth = depth;
+        return this;
+    }
+
+    /**
+     * @return The number of object levels loaded lazily, 0 if disabled
+     */
+    public int getLazyDepth()
+    {
+        return lazyDepth;
+    }
+
+    /**
+     * @return The registry of the type adapters used by this config
+     */
+    public GsonRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * Enable or disable the snapshot mode (see {@link FileConfig#snapshots(boolean)}).<br><br>
+     *
+     * Setting a value then copies the objects containing it into a
+     * new version, the other objects are shared with the previous
+     * version. The index of the paths is a persistent map (see
+     * {@link HashTrie}), so a set only copies the few nodes leading
+     * to the changed paths, whatever the size of the config. Arrays
+     * are copied when appending to them. The ordered index of the
+     * keys (see {@link #keys(String)}) is built again after a set.<br><br>
+     *
+     * Lazy loading is disabled in this mode, the lazy members are
+     * read when enabling it.
+     *
+     * @param snapshots Enable/disable the snapshot mode
+     *
+     * @return This
+     */
+    @Override
+    public synchronized JSONConfig snapshots(boolean snapshots)
+    {
+        materializeAll();
+
+        Lock write = rootLock.writeLock();
+        write.lock();
+
+        try
+        {
+            Version version = this.version;
+
+            // Converted before changing the mode, the index is modified in place out of the snapshot mode
+            if (snapshots != (version.index instanceof TrieIndex))
+            {
+                Version converted = new Version(version.root, snapshots ? new TrieIndex(version.index) : new ConcurrentHashMap<>(version.index));
+                converted.keys = version.keys;
+
+                this.version = converted;
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+
+        super.snapshots(snapshots);
+        return this;
+    }
+
+    /**
+     * @return The cache of the decoded values, and its hit/miss counters
+     */
+    public ValueCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Index every value of an object by its path.<br>
+     * Members with a '.' in their name can't be reached using
+     * a path, so they are not indexed.
+     *
+     * @param index The map to put every path of the object in, with its value
+     * @param root The object to index
+     */
+    private static void index(Map<String, JsonElement> index, JsonObject root)
+    {
+        for (Map.Entry<String, JsonElement> entry : root.entrySet())
+        {
+            if (entry.getKey().indexOf('.') == -1)
+            {
+                index(index, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void index(Map<String, JsonElement> index, String path, JsonElement element)
+    {
+        index.put(path, element);
+
+        if (element.isJsonObject())
+        {
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+            {
+                if (entry.getKey().indexOf('.') == -1)
+                {
+                    index(index, path + "." + entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace a path in the ordered index of the keys, if it was built
+     *
+     * @param keys The index of the keys, or null if it wasn't built
+     * @param path The changed path
+     * @param element Its new value, or null if it was removed
+     */
+    private static void list(NavigableSet<String> keys, String path, JsonElement element)
+    {
+        if (keys == null)
+        {
+            return;
+        }
+
+        Keys.remove(keys, path);
+
+        if (element != null)
+        {
+            leaves(keys, path, element);
+        }
+    }
+
+    private static void leaves(NavigableSet<String> keys, String path, JsonElement element)
+    {
+        if (!element.isJsonObject())
+        {
+            keys.add(path);
+            return;
+        }
+
+        for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+        {
+            if (entry.getKey().indexOf('.') == -1)
+            {
+                leaves(keys, path + "." + entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void unindex(Map<String, JsonElement> index, String path, JsonElement element)
+    {
+        index.remove(path);
+
+        if (element.isJsonObject())
+        {
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+            {
+                if (entry.getKey().indexOf('.') == -1)
+                {
+                    unindex(index, path + "." + entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        return true;
+    }
+
+    /**
+     * A version of the config : its tree and the index of its paths
+     */
+    private static final class Version
+    {
+        final JsonObject root;
+        final Map<String, JsonElement> index;
+
+        /**
+         * The paths of the values that aren't objects, built on
+         * the first call of {@link #keys(String)}
+         */
+        volatile NavigableSet<String> keys;
+
+        Version(JsonObject root, Map<String, JsonElement> index)
+        {
+            this.root = root;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The index of the paths of a version in snapshot mode, stored in
+     * a {@link HashTrie}. Copying it costs nothing, it is only modified
+     * while building a new version, before it is published.
+     */
+    private static final class TrieIndex extends AbstractMap<String, JsonElement>
+    {
+        private HashTrie trie;
+
+        TrieIndex()
+        {
+            this.trie = HashTrie.EMPTY;
+        }
+
+        TrieIndex(TrieIndex index)
+        {
+            this.trie = index.trie;
+        }
+
+        TrieIndex(Map<String, JsonElement> index)
+        {
+            this();
+            index.forEach(this::put);
+        }
+
+        @Override
+        public JsonElement get(Object key)
+        {
+            return key instanceof String ? (JsonElement) trie.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return get(key) != null;
+        }
+
+        @Override
+        public JsonElement put(String key, JsonElement value)
+        {
+            JsonElement previous = get(key);
+            trie = trie.put(key, value);
+
+            return previous;
+        }
+
+        @Override
+        public JsonElement remove(Object key)
+        {
+            JsonElement previous = get(key);
+
+            if (previous != null)
+            {
+                trie = trie.remove((String) key);
+            }
+
+            return previous;
+        }
+
+        @Override
+        public void forEach(BiConsumer<? super String, ? super JsonElement> action)
+        {
+            trie.forEach((key, value) -> action.accept(key, (JsonElement) value));
+        }
+
+        @Override
+        public Set<Entry<String, JsonElement>> entrySet()
+        {
+            Map<String, JsonElement> entries = new HashMap<>();
+            forEach(entries::put);
+
+            return Collections.unmodifiableSet(entries.entrySet());
+        }
     }
 }
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JSON Scanner<br><br>
+ *
+ *
+ * Finds where the members of a JSON object are in its source,
+ * without parsing their values. It only works with charsets where
+ * the JSON structural characters are always single bytes, like
+ * UTF-8 or ISO-8859-1.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class JsonScanner
+{
+    private final InputStream in;
+    private final Charset charset;
+
+    private final byte[] buffer = new byte[8192];
+    private int length;
+    private int pos;
+    private long offset;
+
+    /**
+     * @param in The stream to scan, it is not closed
+     * @param charset The charset of the stream
+     */
+    JsonScanner(InputStream in, Charset charset)
+    {
+        this.in = in;
+        this.charset = charset;
+    }
+
+    /**
+     * Scan the members of the root object
+     *
+     * @param depth The number of object levels to scan (1 for only the root members)
+     *
+     * @return The members of the root object, by name, in the source order
+     *
+     * @throws IOException If the stream couldn't be read or isn't a valid JSON object
+     */
+    Map<String, Member> scan(int depth) throws IOException
+    {
+        whitespaces();
+        expect('{');
+
+        Map<String, Member> members = members(depth);
+
+        whitespaces();
+
+        if (peek() != -1)
+        {
+            throw error("Expected end of document");
+        }
+
+        return members;
+    }
+
+    private Map<String, Member> members(int depth) throws IOException
+    {
+        Map<String, Member> members = new LinkedHashMap<>();
+
+        whitespaces();
+
+        if (peek() == '}')
+        {
+            next();
+            return members;
+        }
+
+        while (true)
+        {
+            whitespaces();
+            expect('"');
+
+            String name = string();
+
+            whitespaces();
+            expect(':');
+            whitespaces();
+
+            long start = position();
+            Map<String, Member> children = null;
+
+            if (depth > 1 && peek() == '{')
+            {
+                next();
+                children = members(depth - 1);
+            }
+            else
+            {
+                value();
+            }
+
+            members.put(name, new Member(start, position(), children));
+
+            whitespaces();
+
+            int c = next();
+
+            if (c == '}')
+            {
+                return members;
+            }
+
+            if (c != ',')
+            {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private void value() throws IOException
+    {
+        int c = next();
+
+        if (c == '"')
+        {
+            skipString();
+        }
+        else if (c == '{' || c == '[')
+        {
+            int level = 1;
+
+            while (level > 0)
+            {
+                c = next();
+
+                if (c == -1)
+                {
+                    throw error("Unterminated object or array");
+                }
+
+                if (c == '"')
+                {
+                    skipString();
+                }
+                else if (c == '{' || c == '[')
+                {
+                    level++;
+                }
+                else if (c == '}' || c == ']')
+                {
+                    level--;
+                }
+            }
+        }
+        else
+        {
+            while (true)
+            {
+                c = peek();
+
+                if (c == -1 || c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                {
+                    return;
+                }
+
+                next();
+            }
+        }
+    }
+
+    private void skipString() throws IOException
+    {
+        while (true)
+        {
+            int c = next();
+
+            if (c == -1)
+            {
+                throw error("Unterminated string");
+            }
+
+            if (c == '\\')
+            {
+                next();
+            }
+            else if (c == '"')
+            {
+                return;
+            }
+        }
+    }
+
+    private String string() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        boolean escaped = false;
+
+        while (true)
+        {
+            int c = next();
+
+            if (c == -1)
+            {
+                throw error("Unterminated string");
+            }
+
+            if (c == '"')
+            {
+                break;
+            }
+
+            bytes.write(c);
+
+            if (c == '\\')
+            {
+                escaped = true;
+                bytes.write(next());
+            }
+        }
+
+        String string = new String(bytes.toByteArray(), charset);
+
+        if (!escaped)
+        {
+            return string;
+        }
+
+        try (JsonReader reader = new JsonReader(new StringReader("\"" + string + "\"")))
+        {
+            return reader.nextString();
+        }
+    }
+
+    private void whitespaces() throws IOException
+    {
+        int c = peek();
+
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+        {
+            next();
+            c = peek();
+        }
+    }
+
+    private void expect(char expected) throws IOException
+    {
+        if (next() != expected)
+        {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private int peek() throws IOException
+    {
+        if (pos == length && !fill())
+        {
+            return -1;
+        }
+
+        return buffer[pos] & 0xFF;
+    }
+
+    private int next() throws IOException
+    {
+        if (pos == length && !fill())
+        {
+            return -1;
+        }
+
+        return buffer[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException
+    {
+        offset += length;
+        pos = 0;
+        length = Math.max(in.read(buffer), 0);
+
+        return length > 0;
+    }
+
+    private long position()
+    {
+        return offset + pos;
+    }
+
+    private MalformedJsonException error(String message)
+    {
+        return new MalformedJsonException(message + " at byte " + position());
+    }
+
+    /**
+     * A member of a scanned object
+     */
+    static class Member
+    {
+        /**
+         * Offset of the first byte of the value
+         */
+        final long start;
+
+        /**
+         * Offset of the byte following the value
+         */
+        final long end;
+
+        /**
+         * The members of the value, if it was an object that was
+         * scanned too, or null
+         */
+        final Map<String, Member> children;
+
+        Member(long start, long end, Map<String, Member> children)
+        {
+            this.start = start;
+            this.end = end;
+            this.children = children;
+        }
+    }
+}
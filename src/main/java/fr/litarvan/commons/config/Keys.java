@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The Keys<br><br>
+ *
+ *
+ * Helpers of the ordered key indexes used by the configs for
+ * {@link Config#keys(String)} : a prefix is a range of the index,
+ * from 'prefix.' (included) to 'prefix/' (excluded), as '/' is the
+ * character following '.'.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class Keys
+{
+    private Keys()
+    {
+    }
+
+    /**
+     * @param keys The keys to index
+     *
+     * @return A new index of the keys
+     */
+    static NavigableSet<String> index(Collection<String> keys)
+    {
+        return new ConcurrentSkipListSet<>(keys);
+    }
+
+    /**
+     * @param keys The index of the keys
+     * @param prefix The prefix, empty for every key
+     *
+     * @return A copy of the keys equal to the prefix or starting with 'prefix.'
+     */
+    static SortedSet<String> range(NavigableSet<String> keys, String prefix)
+    {
+        if (prefix.isEmpty())
+        {
+            return Collections.unmodifiableSortedSet(new TreeSet<>(keys));
+        }
+
+        TreeSet<String> range = new TreeSet<>(keys.subSet(prefix + ".", true, prefix + "/", false));
+
+        if (keys.contains(prefix))
+        {
+            range.add(prefix);
+        }
+
+        return Collections.unmodifiableSortedSet(range);
+    }
+
+    /**
+     * Remove a key and every key starting with 'key.'
+     *
+     * @param keys The index of the keys
+     * @param key The key to remove
+     */
+    static void remove(NavigableSet<String> keys, String key)
+    {
+        keys.remove(key);
+        keys.subSet(key + ".", true, key + "/", false).clear();
+    }
+}
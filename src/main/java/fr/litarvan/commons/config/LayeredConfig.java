@@ -0,0 +1,487 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * The Layered Config<br><br>
+ *
+ *
+ * A config reading its values from several configs, the layers,
+ * by order of priority : a value is read from the first layer having
+ * it.<br><br>
+ *
+ * Example :
+ * <pre>
+ *     Config config = new LayeredConfig(LayeredConfig.systemProperties(),
+ *                                       LayeredConfig.environment(),
+ *                                       provider.json("config/app.json"),
+ *                                       new JSONConfig(new InternalFileSource("/defaults.json")));
+ * </pre>
+ *
+ * The layer of each path is remembered once found, so reading a value
+ * only looks at the layer having it. The layers are listened to, and
+ * when one changes, only the paths that changed are looked up again.
+ * If one of the layers doesn't support listeners (see {@link Config#onChange(String, ConfigListener)}),
+ * none of them is listened to, every read looks at the layers, and
+ * this config doesn't support listeners either.<br><br>
+ *
+ * Keys and paths are the same here : get("a.b") and at("a.b")
+ * both read the path 'a.b' of the layers. Values are set in
+ * the layer given to {@link #writeTo(Config)}.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class LayeredConfig implements Config
+{
+    private final List<Config> layers;
+    private final boolean memoized;
+    private final ValueCache resolved = new ValueCache();
+    private final ConfigListeners listeners = new ConfigListeners();
+    private final List<Layer> observers = new ArrayList<>();
+
+    private volatile Config writable;
+
+    /**
+     * @param layers The layers of the config, from the first to read to the last
+     */
+    public LayeredConfig(Config... layers)
+    {
+        this(Arrays.asList(layers));
+    }
+
+    /**
+     * @param layers The layers of the config, from the first to read to the last
+     */
+    public LayeredConfig(List<? extends Config> layers)
+    {
+        this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+
+        boolean memoized = true;
+
+        for (int i = 0; i < this.layers.size(); i++)
+        {
+            Layer observer = new Layer(i);
+
+            try
+            {
+                this.layers.get(i).onChange("", observer);
+                observers.add(observer);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                // The changes of this layer can't be seen, listening to the others is useless
+                memoized = false;
+                close();
+
+                break;
+            }
+        }
+
+        this.memoized = memoized;
+    }
+
+    /**
+     * A read-only config of the system properties, as they are now
+     *
+     * @return The system properties config
+     */
+    public static FrozenConfig systemProperties()
+    {
+        Map<String, String> values = new HashMap<>();
+
+        for (String name : System.getProperties().stringPropertyNames())
+        {
+            values.put(name, System.getProperty(name));
+        }
+
+        return FrozenConfig.strings(values);
+    }
+
+    /**
+     * A read-only config of the environment variables. Each variable
+     * can also be read with a path made of its name in lower case, with
+     * the '_' replaced by '.' : SERVER_PORT can be read as server.port
+     *
+     * @return The environment variables config
+     */
+    public static FrozenConfig environment()
+    {
+        Map<String, String> variables = System.getenv();
+        Map<String, String> values = new HashMap<>();
+
+        for (Map.Entry<String, String> variable : variables.entrySet())
+        {
+            values.put(variable.getKey().toLowerCase(Locale.ROOT).replace('_', '.'), variable.getValue());
+        }
+
+        values.putAll(variables);
+
+        return FrozenConfig.strings(values);
+    }
+
+    /**
+     * Define the layer in which the values are set
+     *
+     * @param layer One of the layers of this config
+     *
+     * @return This
+     */
+    public LayeredConfig writeTo(Config layer)
+    {
+        if (!layers.contains(layer))
+        {
+            throw new IllegalArgumentException("The given config isn't a layer of this config");
+        }
+
+        this.writable = layer;
+        return this;
+    }
+
+    /**
+     * @return The layers of the config, from the first to read to the last
+     */
+    public List<Config> getLayers()
+    {
+        return layers;
+    }
+
+    /**
+     * Stop listening to the layers. Paths are then looked up in each
+     * layer on every read.
+     */
+    public void close()
+    {
+        for (Layer observer : observers)
+        {
+            layers.get(observer.index).removeListener(observer);
+        }
+
+        observers.clear();
+        resolved.clear();
+    }
+
+    /**
+     * @return The first layer having a value at the path, or null if none has it
+     */
+    private Config layer(String path)
+    {
+        if (!memoized || observers.isEmpty())
+        {
+            return find(path, layers.size());
+        }
+
+        Object cached = resolved.lookup(path, Config.class);
+
+        if (cached != ValueCache.NOT_CACHED)
+        {
+            return (Config) cached;
+        }
+
+        // A layer changing while looking for the path invalidates what was found
+        long stamp = resolved.stamp();
+        Config layer = find(path, layers.size());
+
+        resolved.store(path, Config.class, layer, stamp);
+
+        return layer;
+    }
+
+    private Config find(String path, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            Config layer = layers.get(i);
+
+            if (layer.has(path))
+            {
+                return layer;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        return at(key, def);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Class<T> type)
+    {
+        return at(key, def, type);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Type type)
+    {
+        return at(key, def, type);
+    }
+
+    @Override
+    public int getInt(String key, int def)
+    {
+        return atInt(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        return atLong(key, def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        return atDouble(key, def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        return atBoolean(key, def);
+    }
+
+    @Override
+    public boolean has(String path)
+    {
+        return layer(path) != null;
+    }
+
+    /**
+     * Lists the keys of every layer
+     */
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        TreeSet<String> keys = new TreeSet<>();
+
+        for (Config layer : layers)
+        {
+            keys.addAll(layer.keys(prefix));
+        }
+
+        return Collections.unmodifiableSortedSet(keys);
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        for (String key : keys(prefix))
+        {
+            Config layer = layer(key);
+
+            if (layer != null)
+            {
+                // Lets the layer give its own string form of the values that aren't strings
+                layer.forEach(key, (path, value) -> {
+                    if (path.equals(key))
+                    {
+                        consumer.accept(path, value);
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public String at(String path, String def)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.at(path, def);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Class<T> type)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.at(path, def, type);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Type type)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.at(path, def, type);
+    }
+
+    @Override
+    public int atInt(String path, int def)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.atInt(path, def);
+    }
+
+    @Override
+    public long atLong(String path, long def)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.atLong(path, def);
+    }
+
+    @Override
+    public double atDouble(String path, double def)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.atDouble(path, def);
+    }
+
+    @Override
+    public boolean atBoolean(String path, boolean def)
+    {
+        Config layer = layer(path);
+        return layer == null ? def : layer.atBoolean(path, def);
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        writable().set(key, value);
+    }
+
+    @Override
+    public void set(String key, Object value)
+    {
+        writable().set(key, value);
+    }
+
+    @Override
+    public void append(String field, Object toAppend)
+    {
+        writable().append(field, toAppend);
+    }
+
+    @Override
+    public void appendAll(String field, Collection<?> toAppend)
+    {
+        writable().appendAll(field, toAppend);
+    }
+
+    private Config writable()
+    {
+        Config writable = this.writable;
+
+        if (writable == null)
+        {
+            throw new UnsupportedOperationException("This layered config has no layer to write to, see writeTo(Config)");
+        }
+
+        return writable;
+    }
+
+    /**
+     * Listen to the changes of a path, in the layers having the
+     * priority for it. Listeners are called with the values of the
+     * layer that changed.
+     *
+     * @param path The path to listen to, empty to listen to the whole config
+     * @param listener The listener to call
+     *
+     * @return This
+     *
+     * @throws UnsupportedOperationException If one of the layers doesn't support listeners
+     */
+    @Override
+    public LayeredConfig onChange(String path, ConfigListener listener)
+    {
+        if (!memoized)
+        {
+            throw new UnsupportedOperationException("One of the layers of this config does not support listeners");
+        }
+
+        listeners.add(path, listener);
+        return this;
+    }
+
+    @Override
+    public LayeredConfig removeListener(ConfigListener listener)
+    {
+        listeners.remove(listener);
+        return this;
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        for (Config layer : layers)
+        {
+            if (layer.areObjectsSupported())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isSavingSupported()
+    {
+        Config writable = this.writable;
+        return writable != null && writable.isSavingSupported();
+    }
+
+    /**
+     * Listens to the changes of a layer
+     */
+    private final class Layer implements ConfigListeners.Synchronous
+    {
+        final int index;
+
+        Layer(int index)
+        {
+            this.index = index;
+        }
+
+        @Override
+        public void onChange(String path, Object previous, Object value)
+        {
+            if (path.isEmpty())
+            {
+                resolved.clear();
+            }
+            else
+            {
+                resolved.invalidate(path);
+            }
+
+            // Changes hidden by a layer having the priority don't change the values of this config
+            if (!listeners.isEmpty() && (path.isEmpty() || find(path, index) == null))
+            {
+                listeners.fire(path, previous, value, null);
+            }
+        }
+    }
+}
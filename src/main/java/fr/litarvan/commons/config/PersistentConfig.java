@@ -0,0 +1,592 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * The Persistent Config<br><br>
+ *
+ *
+ * A config whose values are stored in a persistent hash trie
+ * (see {@link HashTrie}) by path, for many configs differing from
+ * a shared one by a few values, like the configs of tenants.<br><br>
+ *
+ * {@link #fork()} makes a copy of the config sharing all its values :
+ * setting a value in a copy only copies the few nodes of the trie
+ * leading to it, so the memory used by each copy depends on the
+ * number of values set in it, not on the size of the config.
+ * Changing the copied config later doesn't change its copies.<br><br>
+ *
+ * Example :
+ * <pre>
+ *     PersistentConfig defaults = PersistentConfig.of(provider.json("config/defaults.json"));
+ *
+ *     PersistentConfig tenant = defaults.fork();
+ *     tenant.set("limits.requests", 500);
+ * </pre>
+ *
+ * Keys and paths are the same here : get("a.b") and at("a.b")
+ * both return the member 'b' of the object 'a'. Reading a value
+ * finds it with a single lookup in the trie, and the immutable values
+ * decoded from it are kept and shared by every copy. Reads never lock,
+ * writers are synchronized.<br><br>
+ *
+ * Members whose name contains a '.' can't be reached with a path
+ * and aren't stored.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class PersistentConfig implements Config
+{
+    private static final Members ROOT = new Members(new String[0]);
+
+    private final GsonRegistry registry;
+    private final ConfigListeners listeners = new ConfigListeners();
+
+    private volatile HashTrie values;
+
+    public PersistentConfig()
+    {
+        this(GsonRegistry.shared());
+    }
+
+    /**
+     * @param registry The registry used to encode and decode the values
+     */
+    public PersistentConfig(GsonRegistry registry)
+    {
+        this(HashTrie.EMPTY.put("", ROOT), registry);
+    }
+
+    private PersistentConfig(HashTrie values, GsonRegistry registry)
+    {
+        this.values = values;
+        this.registry = registry;
+    }
+
+    /**
+     * Copy the values of a config. The trees of JSON configs and
+     * of their frozen copies are copied directly, other configs
+     * are copied value by value (see {@link Config#keys(String)}),
+     * without their empty objects.
+     *
+     * @param config The config to copy
+     *
+     * @return The persistent copy of the config
+     */
+    public static PersistentConfig of(Config config)
+    {
+        return of(config, GsonRegistry.shared());
+    }
+
+    /**
+     * Copy the values of a config (see {@link #of(Config)})
+     *
+     * @param config The config to copy
+     * @param registry The registry used to encode and decode the values
+     *
+     * @return The persistent copy of the config
+     */
+    public static PersistentConfig of(Config config, GsonRegistry registry)
+    {
+        HashTrie values = HashTrie.EMPTY.put("", ROOT);
+        JsonObject tree = config instanceof JSONConfig ? ((JSONConfig) config).tree() : config instanceof FrozenConfig ? ((FrozenConfig) config).tree() : null;
+
+        if (tree != null)
+        {
+            for (Map.Entry<String, JsonElement> member : tree.entrySet())
+            {
+                if (member.getKey().indexOf('.') == -1)
+                {
+                    values = insert(values, member.getKey(), member.getValue());
+                }
+            }
+
+            return new PersistentConfig(values, registry);
+        }
+
+        for (String key : config.keys(""))
+        {
+            JsonElement element;
+
+            if (config.areObjectsSupported())
+            {
+                element = config.at(key, null, (Type) JsonElement.class);
+            }
+            else
+            {
+                String value = config.get(key, null);
+                element = value == null ? null : new JsonPrimitive(value);
+            }
+
+            values = insert(values, key, element == null ? JsonNull.INSTANCE : element);
+        }
+
+        return new PersistentConfig(values, registry);
+    }
+
+    /**
+     * Make a copy of the config, sharing all its values.
+     * Listeners aren't copied.
+     *
+     * @return The copy
+     */
+    public PersistentConfig fork()
+    {
+        return new PersistentConfig(values, registry);
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        return at(key, def);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Class<T> type)
+    {
+        return get(key, def, (Type) type);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Type type)
+    {
+        Object entry = values.get(key);
+
+        if (entry == null)
+        {
+            return def;
+        }
+
+        T value = entry instanceof Leaf ? ((Leaf) entry).decode(registry, type) : registry.fromJson(object(values, key, (Members) entry), type);
+        return value == null ? def : value;
+    }
+
+    @Override
+    public int getInt(String key, int def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getInt(def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getLong(def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getDouble(def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getBoolean(def);
+    }
+
+    private PrimitiveValue primitive(String path)
+    {
+        Object entry = values.get(path);
+        return entry instanceof Leaf ? ((Leaf) entry).primitive() : null;
+    }
+
+    @Override
+    public String at(String path, String def)
+    {
+        return at(path, def, String.class);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Class<T> type)
+    {
+        return at(path, def, (Type) type);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Type type)
+    {
+        try
+        {
+            return get(path, def, type);
+        }
+        catch (JsonParseException e)
+        {
+            return def;
+        }
+    }
+
+    @Override
+    public boolean has(String path)
+    {
+        Object entry = values.get(path);
+        return entry instanceof Members || (entry instanceof Leaf && !((Leaf) entry).element.isJsonNull());
+    }
+
+    /**
+     * Lists the paths of the values that aren't objects
+     */
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        HashTrie values = this.values;
+        TreeSet<String> keys = new TreeSet<>();
+
+        leaves(values, prefix, values.get(prefix), keys);
+
+        return Collections.unmodifiableSortedSet(keys);
+    }
+
+    private static void leaves(HashTrie values, String path, Object entry, TreeSet<String> keys)
+    {
+        if (entry instanceof Leaf)
+        {
+            keys.add(path);
+        }
+        else if (entry instanceof Members)
+        {
+            for (String name : ((Members) entry).names)
+            {
+                String child = child(path, name);
+                leaves(values, child, values.get(child), keys);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        HashTrie values = this.values;
+
+        for (String key : keys(prefix))
+        {
+            JsonElement element = ((Leaf) values.get(key)).element;
+
+            if (element.isJsonNull())
+            {
+                consumer.accept(key, null);
+            }
+            else
+            {
+                consumer.accept(key, element.isJsonPrimitive() ? element.getAsString() : element.toString());
+            }
+        }
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        set(key, (Object) value);
+    }
+
+    /**
+     * Set a value, or remove it if null
+     *
+     * @param key The path of the value to set
+     * @param value The value to set, encoded using the registry
+     *
+     * @throws IllegalArgumentException If one of the parents of the value isn't an object
+     */
+    @Override
+    public void set(String key, Object value)
+    {
+        if (key.isEmpty())
+        {
+            throw new IllegalArgumentException("Can't replace the root object of the config");
+        }
+
+        JsonElement element = value == null ? null : registry.toJsonTree(value);
+        HashTrie before;
+
+        synchronized (this)
+        {
+            before = values;
+            HashTrie after = remove(before, key, element == null);
+
+            values = element == null ? after : insert(after, key, element);
+        }
+
+        if (!listeners.isEmpty())
+        {
+            listeners.fire(key, element(before, key), element, JSONConfig.CHILDREN);
+        }
+    }
+
+    /**
+     * Remove a value and its members
+     *
+     * @param values The values to remove it from
+     * @param path The path of the value
+     * @param unlink If the value should also be removed from the members of its parent
+     *
+     * @return The values without it
+     */
+    private static HashTrie remove(HashTrie values, String path, boolean unlink)
+    {
+        Object entry = values.get(path);
+
+        if (entry == null)
+        {
+            return values;
+        }
+
+        if (entry instanceof Members)
+        {
+            for (String name : ((Members) entry).names)
+            {
+                values = remove(values, child(path, name), false);
+            }
+        }
+
+        values = values.remove(path);
+
+        if (unlink)
+        {
+            int dot = path.lastIndexOf('.');
+            String parent = dot == -1 ? "" : path.substring(0, dot);
+
+            values = values.put(parent, ((Members) values.get(parent)).without(path.substring(dot + 1)));
+        }
+
+        return values;
+    }
+
+    /**
+     * Put a value and its members, creating its missing parents
+     *
+     * @param values The values to put it in
+     * @param path The path of the value
+     * @param element The value
+     *
+     * @return The values with it
+     *
+     * @throws IllegalArgumentException If one of the parents of the value isn't an object
+     */
+    private static HashTrie insert(HashTrie values, String path, JsonElement element)
+    {
+        int dot = path.lastIndexOf('.');
+        String parent = dot == -1 ? "" : path.substring(0, dot);
+        String name = path.substring(dot + 1);
+        Object entry = values.get(parent);
+
+        if (entry == null)
+        {
+            values = insert(values, parent, new JsonObject());
+            entry = values.get(parent);
+        }
+        else if (!(entry instanceof Members))
+        {
+            throw new IllegalArgumentException("Field '" + parent + "' isn't an object");
+        }
+
+        values = values.put(parent, ((Members) entry).with(name));
+
+        if (!element.isJsonObject())
+        {
+            return values.put(path, new Leaf(element));
+        }
+
+        values = values.put(path, ROOT);
+
+        for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet())
+        {
+            if (member.getKey().indexOf('.') == -1)
+            {
+                values = insert(values, child(path, member.getKey()), member.getValue());
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * @return The value at the path, with its members if it is an object, or null if there isn't any
+     */
+    private static JsonElement element(HashTrie values, String path)
+    {
+        Object entry = values.get(path);
+
+        if (entry instanceof Leaf)
+        {
+            return ((Leaf) entry).element;
+        }
+
+        return entry == null ? null : object(values, path, (Members) entry);
+    }
+
+    private static JsonObject object(HashTrie values, String path, Members members)
+    {
+        JsonObject object = new JsonObject();
+
+        for (String name : members.names)
+        {
+            String child = child(path, name);
+            object.add(name, element(values, child));
+        }
+
+        return object;
+    }
+
+    private static String child(String path, String name)
+    {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    @Override
+    public PersistentConfig onChange(String path, ConfigListener listener)
+    {
+        listeners.add(path, listener);
+        return this;
+    }
+
+    @Override
+    public PersistentConfig removeListener(ConfigListener listener)
+    {
+        listeners.remove(listener);
+        return this;
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isSavingSupported()
+    {
+        return false;
+    }
+
+    /**
+     * The names of the members of an object, in order
+     */
+    private static final class Members
+    {
+        final String[] names;
+
+        Members(String[] names)
+        {
+            this.names = names;
+        }
+
+        Members with(String name)
+        {
+            for (String existing : names)
+            {
+                if (existing.equals(name))
+                {
+                    return this;
+                }
+            }
+
+            String[] names = Arrays.copyOf(this.names, this.names.length + 1);
+            names[this.names.length] = name;
+
+            return new Members(names);
+        }
+
+        Members without(String name)
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i].equals(name))
+                {
+                    String[] names = new String[this.names.length - 1];
+
+                    System.arraycopy(this.names, 0, names, 0, i);
+                    System.arraycopy(this.names, i + 1, names, i, names.length - i);
+
+                    return new Members(names);
+                }
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * A value that isn't an object, shared by every copy of the config
+     * having it, with the last immutable object decoded from it
+     */
+    private static final class Leaf
+    {
+        final JsonElement element;
+
+        private volatile Decoded decoded;
+        private volatile PrimitiveValue primitive;
+
+        Leaf(JsonElement element)
+        {
+            this.element = element;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T decode(GsonRegistry registry, Type type)
+        {
+            Decoded last = decoded;
+
+            if (last != null && last.type.equals(type))
+            {
+                return (T) last.value;
+            }
+
+            T value = registry.fromJson(element, type);
+
+            if (ValueCache.isImmutable(value))
+            {
+                decoded = new Decoded(type, value);
+            }
+
+            return value;
+        }
+
+        PrimitiveValue primitive()
+        {
+            PrimitiveValue value = primitive;
+
+            if (value == null && element.isJsonPrimitive())
+            {
+                // Parsed values are immutable, parsing it twice at the same time is harmless
+                primitive = value = PrimitiveValue.parse(element.getAsString());
+            }
+
+            return value;
+        }
+    }
+}
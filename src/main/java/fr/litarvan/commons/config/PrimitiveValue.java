@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.math.BigDecimal;
+
+/**
+ * The Primitive Value<br><br>
+ *
+ *
+ * A string value parsed once as every primitive it can represent,
+ * so configs storing strings can read numbers and booleans from
+ * it without parsing or allocating anything again.<br><br>
+ *
+ * Like Gson, a decimal number without a fractional part (like "1.0"
+ * or "1e3") is read as an integer too, while "1.5" isn't.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class PrimitiveValue
+{
+    private static final byte INVALID = -1;
+
+    /**
+     * The parsed string, to check it is still the value of the config
+     */
+    final String source;
+
+    private final boolean integer;
+    private final long longValue;
+    private final boolean decimal;
+    private final double doubleValue;
+    private final byte booleanValue;
+
+    private PrimitiveValue(String source)
+    {
+        String value = source.trim();
+
+        long longValue = 0;
+        boolean integer = true;
+
+        try
+        {
+            longValue = Long.parseLong(value);
+        }
+        catch (NumberFormatException e)
+        {
+            integer = false;
+        }
+
+        double doubleValue = 0;
+        boolean decimal = true;
+
+        try
+        {
+            doubleValue = Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            decimal = false;
+        }
+
+        if (!integer && decimal)
+        {
+            // Like Gson, "1.0" or "1e3" are integers too, as long as they have no fractional part
+            Long exact = integral(value);
+
+            if (exact != null)
+            {
+                integer = true;
+                longValue = exact;
+            }
+        }
+
+        this.source = source;
+        this.integer = integer;
+        this.longValue = longValue;
+        this.decimal = decimal;
+        this.doubleValue = doubleValue;
+        this.booleanValue = "true".equalsIgnoreCase(value) ? 1 : "false".equalsIgnoreCase(value) ? 0 : INVALID;
+    }
+
+    /**
+     * @return The value if it is an integer fitting in a long, written
+     *         with a decimal point or an exponent, null otherwise
+     */
+    private static Long integral(String value)
+    {
+        BigDecimal exact;
+
+        try
+        {
+            exact = new BigDecimal(value).stripTrailingZeros();
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        // Checked before converting, so a huge exponent isn't expanded
+        if (exact.scale() > 0 || exact.precision() - exact.scale() > 19)
+        {
+            return null;
+        }
+
+        try
+        {
+            return exact.longValueExact();
+        }
+        catch (ArithmeticException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param source The string to parse
+     *
+     * @return The parsed value
+     */
+    static PrimitiveValue parse(String source)
+    {
+        return new PrimitiveValue(source);
+    }
+
+    int getInt(int def)
+    {
+        return integer && longValue == (int) longValue ? (int) longValue : def;
+    }
+
+    long getLong(long def)
+    {
+        return integer ? longValue : def;
+    }
+
+    double getDouble(double def)
+    {
+        return decimal ? doubleValue : def;
+    }
+
+    boolean getBoolean(boolean def)
+    {
+        return booleanValue == INVALID ? def : booleanValue == 1;
+    }
+}
@@ -18,10 +18,22 @@
  */
 package fr.litarvan.commons.config;
 
+import fr.litarvan.commons.io.FileSource;
 import fr.litarvan.commons.io.IOSource;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Properties;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Properties Config<br><br>
@@ -29,7 +41,10 @@ import java.util.Properties;
  *
  * A Config made using Java Properties.<br>
  * To create one, consider using the {@link ConfigProvider#properties}
- * methods.
+ * methods.<br><br>
+ *
+ * Values read as primitives (see {@link #getInt(String, int)}) are
+ * parsed once, and parsed again only when they change.
  *
  * @author Litarvan
  * @version 1.0.0
@@ -38,6 +53,10 @@ import java.util.Properties;
 public class PropertiesConfig extends FileConfig
 {
     private Properties properties = new Properties();
+    private volatile HashTrie snapshot;
+    private final Map<String, PrimitiveValue> primitives = new ConcurrentHashMap<>();
+    private volatile NavigableSet<String> keys;
+    private final Map<String, String> pending = Collections.synchronizedMap(new LinkedHashMap<>());
 
     public PropertiesConfig()
     {
@@ -45,24 +64,195 @@ public class PropertiesConfig extends FileConfig
 
     public PropertiesConfig(File file)
     {
-        super(file);
+        // Not using super(file) as it would load before the fields are initialized
+        super();
+
+        this.in(file);
+
+        if (file != null && file.exists())
+        {
+            this.load();
+        }
     }
 
     @Override
     public String get(String key, String def)
     {
+        HashTrie snapshot = this.snapshot;
+
+        if (snapshot != null)
+        {
+            String value = (String) snapshot.get(key);
+            return value == null ? def : value;
+        }
+
         return properties.getProperty(key, def);
     }
 
+    @Override
+    public int getInt(String key, int def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getInt(def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getLong(def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getDouble(def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        PrimitiveValue value = primitive(key);
+        return value == null ? def : value.getBoolean(def);
+    }
+
+    /**
+     * @return The value of the key parsed as primitives, or null if not found
+     */
+    private PrimitiveValue primitive(String key)
+    {
+        String value = get(key, null);
+
+        if (value == null)
+        {
+            return null;
+        }
+
+        PrimitiveValue parsed = primitives.get(key);
+
+        // Compared by identity, as setting or loading the value always stores a new string
+        if (parsed == null || parsed.source != value)
+        {
+            parsed = PrimitiveValue.parse(value);
+            primitives.put(key, parsed);
+        }
+
+        return parsed;
+    }
+
     @Override
     public void set(String key, String value)
     {
-        properties.setProperty(key, value);
+        Object previous;
 
-        if (autoSave)
+        // Blocked during an edition (see FileConfig#edit)
+        synchronized (this)
         {
-            save();
+            previous = properties.setProperty(key, value);
+
+            if (snapshots && snapshot != null)
+            {
+                snapshot = snapshot.put(key, value);
+            }
         }
+
+        primitives.remove(key);
+
+        if (isShared())
+        {
+            pending.remove(key);
+            pending.put(key, value);
+        }
+
+        NavigableSet<String> keys = this.keys;
+
+        if (keys != null)
+        {
+            keys.add(key);
+        }
+
+        listeners.fire(key, previous, value, null);
+        changed();
+    }
+
+    /**
+     * Enable or disable the snapshot mode (see {@link FileConfig#snapshots(boolean)}).<br><br>
+     *
+     * Readers then read an immutable copy of the properties instead
+     * of the synchronized properties table. The copy is a persistent
+     * map (see {@link HashTrie}) : setting a value only copies the few
+     * nodes leading to it, whatever the number of properties.
+     *
+     * @param snapshots Enable/disable the snapshot mode
+     *
+     * @return This
+     */
+    @Override
+    public synchronized PropertiesConfig snapshots(boolean snapshots)
+    {
+        super.snapshots(snapshots);
+        publish();
+
+        return this;
+    }
+
+    /**
+     * Publish a new copy of the properties to the readers, if the
+     * snapshot mode is enabled
+     */
+    private synchronized void publish()
+    {
+        snapshot = snapshots ? trie() : null;
+        primitives.clear();
+        keys = null;
+    }
+
+    private Map<String, String> values()
+    {
+        Map<String, String> values = new HashMap<>();
+
+        for (String key : properties.stringPropertyNames())
+        {
+            values.put(key, properties.getProperty(key));
+        }
+
+        return values;
+    }
+
+    private HashTrie trie()
+    {
+        HashTrie values = HashTrie.EMPTY;
+
+        for (String key : properties.stringPropertyNames())
+        {
+            values = values.put(key, properties.getProperty(key));
+        }
+
+        return values;
+    }
+
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        NavigableSet<String> keys = this.keys;
+
+        if (keys == null)
+        {
+            // Setting a value adds its key after putting it in the properties, so none is missed
+            synchronized (properties)
+            {
+                this.keys = keys = Keys.index(properties.stringPropertyNames());
+            }
+        }
+
+        return Keys.range(keys, prefix);
+    }
+
+    @Override
+    public FrozenConfig freeze()
+    {
+        return FrozenConfig.strings(values());
     }
 
     @Override
@@ -79,30 +269,198 @@ public class PropertiesConfig extends FileConfig
             throw new IllegalStateException("Config file isn't defined");
         }
 
-        try
+        Map<String, String> previous = listeners.isEmpty() ? null : values();
+
+        if (compiledCache && file instanceof FileSource)
         {
-            properties.load(file.provideInput());
+            loadCompiled(((FileSource) file).getFile());
         }
-        catch (IOException e)
+        else
         {
-            throw new RuntimeException("Can't read config", e);
+            try (InputStream in = file.provideInput())
+            {
+                properties.load(in);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Can't read config", e);
+            }
+        }
+
+        publish();
+
+        if (previous != null)
+        {
+            fire(previous);
         }
 
         return this;
     }
 
+    /**
+     * Reload the properties from the file, setting only the ones
+     * that changed and removing the ones that aren't in it anymore
+     */
     @Override
-    public FileConfig save()
+    protected synchronized void reload()
+    {
+        update(read());
+    }
+
+    /**
+     * Read the file again, with the values set since the last save
+     */
+    @Override
+    protected synchronized void rebase()
+    {
+        Properties loaded = read();
+
+        synchronized (pending)
+        {
+            pending.forEach(loaded::setProperty);
+        }
+
+        update(loaded);
+    }
+
+    private Properties read()
+    {
+        Properties loaded = new Properties();
+
+        try (InputStream in = file.provideInput())
+        {
+            loaded.load(in);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't read config", e);
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Replace only the properties that differ from the given ones
+     *
+     * @param loaded The new properties
+     */
+    private void update(Properties loaded)
+    {
+        Map<String, String> previous = values();
+        boolean changed = properties.keySet().retainAll(loaded.keySet());
+
+        for (String key : loaded.stringPropertyNames())
+        {
+            String value = loaded.getProperty(key);
+
+            if (!value.equals(properties.getProperty(key)))
+            {
+                properties.setProperty(key, value);
+                changed = true;
+            }
+        }
+
+        if (changed)
+        {
+            publish();
+            fire(previous);
+        }
+    }
+
+    /**
+     * Notify the listeners of every property that differs from the given ones
+     *
+     * @param previous The previous properties
+     */
+    private void fire(Map<String, String> previous)
     {
-        try
+        for (Map.Entry<String, String> entry : previous.entrySet())
+        {
+            if (properties.getProperty(entry.getKey()) == null)
+            {
+                listeners.fire(entry.getKey(), entry.getValue(), null, null);
+            }
+        }
+
+        for (String key : properties.stringPropertyNames())
+        {
+            listeners.fire(key, previous.get(key), properties.getProperty(key), null);
+        }
+    }
+
+    private void loadCompiled(File file)
+    {
+        CompiledCache compiled = new CompiledCache(file, CompiledCache.PROPERTIES);
+        ByteBuffer buffer = compiled.open();
+
+        if (buffer != null)
+        {
+            try
+            {
+                Properties loaded = new Properties();
+
+                for (int i = buffer.getInt(); i > 0; i--)
+                {
+                    String key = CompiledCache.readString(buffer);
+                    loaded.setProperty(key, CompiledCache.readString(buffer));
+                }
+
+                properties.putAll(loaded);
+                return;
+            }
+            catch (RuntimeException ignored)
+            {
+                // Corrupted cache, it is rewritten below
+            }
+        }
+
+        Properties loaded = new Properties();
+
+        try (InputStream in = new FileInputStream(file))
         {
-            properties.store(file.provideOutput(), "Krobot generated config\n");
+            loaded.load(in);
         }
         catch (IOException e)
         {
-            throw new RuntimeException("Can't save config", e);
+            throw new RuntimeException("Can't read config", e);
         }
 
+        properties.putAll(loaded);
+        compiled.write(out -> {
+            out.writeInt(loaded.size());
+
+            for (String key : loaded.stringPropertyNames())
+            {
+                CompiledCache.writeString(out, key);
+                CompiledCache.writeString(out, loaded.getProperty(key));
+            }
+        });
+    }
+
+    @Override
+    public FileConfig save()
+    {
+        Map<String, String> written;
+
+        synchronized (pending)
+        {
+            written = new HashMap<>(pending);
+        }
+
+        writeFile(() -> {
+            try (OutputStream out = file.provideOutput())
+            {
+                properties.store(out, "Krobot generated config\n");
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Can't save config", e);
+            }
+        });
+
+        // Values set during the save are kept for the next one
+        written.forEach(pending::remove);
+
         return this;
     }
 
@@ -119,17 +477,25 @@ public class PropertiesConfig extends FileConfig
             throw new RuntimeException("Default file doesn't exist");
         }
 
-        try
+        Map<String, String> previous = listeners.isEmpty() ? null : values();
+
+        try (InputStream in = source.provideInput())
         {
-            properties.load(source.provideInput());
+            properties.load(in);
         }
         catch (IOException e)
         {
             throw new RuntimeException("Can't read default config", e);
         }
 
+        publish();
         save();
 
+        if (previous != null)
+        {
+            fire(previous);
+        }
+
         return this;
     }
 }
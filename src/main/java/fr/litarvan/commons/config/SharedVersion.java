@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Shared Version<br><br>
+ *
+ *
+ * The version of a config file shared by several processes (see
+ * {@link FileConfig#shared(boolean)}), stored in a small sidecar
+ * file mapped in memory, next to the config file.<br><br>
+ *
+ * The sidecar file is also locked while the config file is written
+ * (exclusively) or read (shared). File locks are held by the whole
+ * process, so there is only one instance per file, also serializing
+ * the threads of the process.<br><br>
+ *
+ * Reads of the mapped version are followed by an acquire fence and
+ * writes are preceded by a release fence, as plain reads of a mapped
+ * buffer could be reordered or hoisted by the compiler.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class SharedVersion
+{
+    private static final Map<String, SharedVersion> VERSIONS = new ConcurrentHashMap<>();
+
+    private static final MethodHandle ACQUIRE = fence("acquireFence", "loadFence");
+    private static final MethodHandle RELEASE = fence("releaseFence", "storeFence");
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private SharedVersion(File file) throws IOException
+    {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        FileLock lock = channel.lock();
+
+        try
+        {
+            if (channel.size() < 8)
+            {
+                channel.write(ByteBuffer.allocate(8), 0);
+                channel.force(true);
+            }
+        }
+        finally
+        {
+            lock.release();
+        }
+
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+    }
+
+    /**
+     * @param config The config file
+     *
+     * @return The version of the file
+     */
+    static SharedVersion of(File config)
+    {
+        File file = new File(config.getAbsoluteFile().getPath() + ".version");
+
+        return VERSIONS.computeIfAbsent(file.getPath(), path -> {
+            try
+            {
+                return new SharedVersion(file);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Can't open the shared version of the config", e);
+            }
+        });
+    }
+
+    /**
+     * @return The current version, read from the mapped file
+     */
+    long get()
+    {
+        long version = buffer.getLong(0);
+        run(ACQUIRE);
+
+        return version;
+    }
+
+    /**
+     * Write the config file, holding the exclusive lock, then
+     * increment the version
+     *
+     * @param write The writing of the config file
+     *
+     * @return The new version
+     */
+    synchronized long write(Runnable write)
+    {
+        try
+        {
+            FileLock lock = channel.lock();
+
+            try
+            {
+                write.run();
+
+                long version = get() + 1;
+
+                run(RELEASE);
+                buffer.putLong(0, version);
+                buffer.force();
+
+                return version;
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't lock the shared version of the config", e);
+        }
+    }
+
+    /**
+     * Read the config file, holding the shared lock, so it isn't
+     * written meanwhile
+     *
+     * @param read The reading of the config file
+     *
+     * @return The version that was read
+     */
+    synchronized long read(Runnable read)
+    {
+        try
+        {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+
+            try
+            {
+                long version = get();
+                read.run();
+
+                return version;
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Can't lock the shared version of the config", e);
+        }
+    }
+
+    /**
+     * @return The fence of VarHandle (Java 9+), or the one of Unsafe on Java 8
+     */
+    private static MethodHandle fence(String varHandle, String unsafe)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType type = MethodType.methodType(void.class);
+
+        try
+        {
+            return lookup.findStatic(Class.forName("java.lang.invoke.VarHandle"), varHandle, type);
+        }
+        catch (ReflectiveOperationException ignored)
+        {
+            // Java 8
+        }
+
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field instance = unsafeClass.getDeclaredField("theUnsafe");
+            instance.setAccessible(true);
+
+            return lookup.findVirtual(unsafeClass, unsafe, type).bindTo(instance.get(null));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new RuntimeException("Can't find a memory fence for the shared versions", e);
+        }
+    }
+
+    private static void run(MethodHandle fence)
+    {
+        try
+        {
+            fence.invokeExact();
+        }
+        catch (Throwable e)
+        {
+            throw new IllegalStateException("Can't run a memory fence", e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.BiConsumer;
+
+/**
+ * The Tracking Config<br><br>
+ *
+ *
+ * A read-only view of a config, remembering every path read
+ * through it, given to the functions of the {@link Derived} values.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+class TrackingConfig implements Config
+{
+    private final Config config;
+    private final Set<String> paths;
+
+    /**
+     * @param config The config to read
+     * @param paths The set receiving the read paths
+     */
+    TrackingConfig(Config config, Set<String> paths)
+    {
+        this.config = config;
+        this.paths = paths;
+    }
+
+    @Override
+    public String get(String key, String def)
+    {
+        paths.add(key);
+        return config.get(key, def);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Class<T> type)
+    {
+        paths.add(key);
+        return config.get(key, def, type);
+    }
+
+    @Override
+    public <T> T get(String key, T def, Type type)
+    {
+        paths.add(key);
+        return config.get(key, def, type);
+    }
+
+    @Override
+    public int getInt(String key, int def)
+    {
+        paths.add(key);
+        return config.getInt(key, def);
+    }
+
+    @Override
+    public long getLong(String key, long def)
+    {
+        paths.add(key);
+        return config.getLong(key, def);
+    }
+
+    @Override
+    public double getDouble(String key, double def)
+    {
+        paths.add(key);
+        return config.getDouble(key, def);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def)
+    {
+        paths.add(key);
+        return config.getBoolean(key, def);
+    }
+
+    @Override
+    public String at(String path, String def)
+    {
+        paths.add(path);
+        return config.at(path, def);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Class<T> type)
+    {
+        paths.add(path);
+        return config.at(path, def, type);
+    }
+
+    @Override
+    public <T> T at(String path, T def, Type type)
+    {
+        paths.add(path);
+        return config.at(path, def, type);
+    }
+
+    @Override
+    public int atInt(String path, int def)
+    {
+        paths.add(path);
+        return config.atInt(path, def);
+    }
+
+    @Override
+    public long atLong(String path, long def)
+    {
+        paths.add(path);
+        return config.atLong(path, def);
+    }
+
+    @Override
+    public double atDouble(String path, double def)
+    {
+        paths.add(path);
+        return config.atDouble(path, def);
+    }
+
+    @Override
+    public boolean atBoolean(String path, boolean def)
+    {
+        paths.add(path);
+        return config.atBoolean(path, def);
+    }
+
+    @Override
+    public boolean has(String path)
+    {
+        paths.add(path);
+        return config.has(path);
+    }
+
+    @Override
+    public SortedSet<String> keys(String prefix)
+    {
+        paths.add(prefix);
+        return config.keys(prefix);
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, String> consumer)
+    {
+        paths.add(prefix);
+        config.forEach(prefix, consumer);
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        throw new UnsupportedOperationException("A derived value can't modify its config");
+    }
+
+    @Override
+    public void set(String key, Object value)
+    {
+        throw new UnsupportedOperationException("A derived value can't modify its config");
+    }
+
+    @Override
+    public void append(String field, Object toAppend)
+    {
+        throw new UnsupportedOperationException("A derived value can't modify its config");
+    }
+
+    @Override
+    public void appendAll(String field, Collection<?> toAppend)
+    {
+        throw new UnsupportedOperationException("A derived value can't modify its config");
+    }
+
+    @Override
+    public boolean areObjectsSupported()
+    {
+        return config.areObjectsSupported();
+    }
+
+    @Override
+    public boolean isSavingSupported()
+    {
+        return false;
+    }
+}
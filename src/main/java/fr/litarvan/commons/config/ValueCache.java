@@ -0,0 +1,295 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Value Cache<br><br>
+ *
+ *
+ * Remembers the values decoded at a path for a given type,
+ * so reading the same value twice doesn't decode it twice.
+ * Values that weren't found are remembered too.<br><br>
+ *
+ * Entries are invalidated by path : invalidating 'a.b' drops
+ * the entries of 'a', 'a.b' and 'a.b.c', but keeps the ones of
+ * 'a.c'. The cached paths are also kept sorted, so the children
+ * of a path are found without going through every cached path.<br><br>
+ *
+ * A value decoded while its path is invalidated may be outdated,
+ * so caching it is guarded by a stamp (see {@link #stamp()}) :
+ * <pre>
+ *     long stamp = cache.stamp();
+ *     Object value = decode(path);
+ *
+ *     cache.store(path, type, value, stamp);
+ * </pre>
+ *
+ * Cached objects are shared between readers, so only immutable
+ * ones should be stored (see {@link #isImmutable(Object)}).<br><br>
+ *
+ * The cache holds a bounded number of paths : storing a new path
+ * in a full cache evicts the one following it in the sorted paths,
+ * so reading many distinct paths (or paths that don't exist) can't
+ * grow it forever.
+ *
+ * @author Litarvan
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class ValueCache
+{
+    /**
+     * Returned by {@link #lookup(String, Type)} when nothing is
+     * cached for the given path and type
+     */
+    public static final Object NOT_CACHED = new Object();
+
+    /**
+     * The default maximum number of cached paths
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Object NULL = new Object();
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<>(Arrays.asList(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+        Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, PrimitiveValue.class
+    ));
+
+    private final int capacity;
+    private final Map<String, Map<Type, Object>> values = new ConcurrentHashMap<>();
+    private final NavigableSet<String> paths = new ConcurrentSkipListSet<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache holding at most {@link #DEFAULT_CAPACITY} paths
+     */
+    public ValueCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The maximum number of cached paths
+     */
+    public ValueCache(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive : " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param value A decoded value
+     *
+     * @return If the value can be shared between readers without being
+     *         copied : null, strings, boxed primitives, big numbers and enums
+     */
+    public static boolean isImmutable(Object value)
+    {
+        return value == null || value instanceof Enum || IMMUTABLE.contains(value.getClass());
+    }
+
+    /**
+     * Get a cached value
+     *
+     * @param path The path of the value
+     * @param type The type the value was decoded to
+     *
+     * @return The cached value (null if it was remembered as not found),
+     *         or {@link #NOT_CACHED} if there is no cached value
+     */
+    public Object lookup(String path, Type type)
+    {
+        Map<Type, Object> decoded = values.get(path);
+        Object value = decoded == null ? null : decoded.get(type);
+
+        if (value == null)
+        {
+            misses.increment();
+            return NOT_CACHED;
+        }
+
+        hits.increment();
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * Must be read before reading the value to cache, and given
+     * to {@link #store(String, Type, Object, long)}
+     *
+     * @return The current stamp of the cache, changed by every invalidation
+     */
+    public long stamp()
+    {
+        return invalidations.get();
+    }
+
+    /**
+     * Cache a decoded value, unless the cache was invalidated since
+     * the given stamp was read, as the value may then be outdated
+     *
+     * @param path The path of the value
+     * @param type The type the value was decoded to
+     * @param value The decoded value, or null if not found
+     * @param stamp The stamp read before reading the value (see {@link #stamp()})
+     */
+    public void store(String path, Type type, Object value, long stamp)
+    {
+        Object stored = value == null ? NULL : value;
+        Map<Type, Object> decoded = values.get(path);
+
+        if (decoded == null)
+        {
+            if (values.size() >= capacity)
+            {
+                evict(path);
+            }
+
+            decoded = values.computeIfAbsent(path, p -> new ConcurrentHashMap<>());
+        }
+
+        decoded.put(type, stored);
+        paths.add(path);
+
+        // Invalidations increment the stamp before dropping the values, so they either drop this one or are seen here
+        if (invalidations.get() != stamp)
+        {
+            decoded.remove(type, stored);
+        }
+    }
+
+    /**
+     * Drop the cached values of a path, of its parents and of
+     * its children
+     *
+     * @param path The path that changed
+     */
+    public void invalidate(String path)
+    {
+        invalidations.incrementAndGet();
+
+        remove(path);
+
+        int index = path.indexOf('.');
+        while (index != -1)
+        {
+            remove(path.substring(0, index));
+            index = path.indexOf('.', index + 1);
+        }
+
+        // '/' is the character following '.', so this is every path starting with 'path.'
+        NavigableSet<String> children = paths.subSet(path + ".", true, path + "/", false);
+        String child;
+
+        while ((child = children.pollFirst()) != null)
+        {
+            values.remove(child);
+        }
+    }
+
+    /**
+     * Make room for a new path, dropping the cached path following it
+     * (or the first one), which is unrelated to how often it is read
+     */
+    private void evict(String path)
+    {
+        String victim = paths.higher(path);
+
+        if (victim == null)
+        {
+            victim = paths.ceiling("");
+        }
+
+        if (victim != null)
+        {
+            remove(victim);
+            evictions.increment();
+        }
+    }
+
+    private void remove(String path)
+    {
+        paths.remove(path);
+        values.remove(path);
+    }
+
+    /**
+     * Drop every cached value
+     */
+    public void clear()
+    {
+        invalidations.incrementAndGet();
+
+        values.clear();
+        paths.clear();
+    }
+
+    /**
+     * @return The number of lookups that found a cached value
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that didn't find a cached value
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of paths dropped to make room for new ones
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of cached paths
+     */
+    public int size()
+    {
+        return values.size();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BinaryConfigTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("binary", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void mergesChangesIntoTheSavedEntries()
+    {
+        Map<String, String> expected = new HashMap<>();
+        BinaryConfig config = config();
+
+        for (int i = 0; i < 1000; i += 2)
+        {
+            set(config, expected, key(i), "first" + i);
+        }
+
+        config.save();
+
+        // Before, between and after the saved keys, and replacing some of them
+        for (int i = 1; i < 1001; i += 2)
+        {
+            set(config, expected, key(i), "second" + i);
+        }
+
+        for (int i = 0; i < 1000; i += 10)
+        {
+            set(config, expected, key(i), "replaced" + i);
+        }
+
+        set(config, expected, "", "empty");
+        set(config, expected, "a", "");
+
+        check(config, expected);
+        config.save();
+        check(config, expected);
+
+        BinaryConfig loaded = config();
+
+        assertEquals(expected.size(), loaded.size());
+        check(loaded, expected);
+    }
+
+    @Test
+    public void sortsKeysByTheirUtf8Bytes()
+    {
+        Map<String, String> expected = new HashMap<>();
+        BinaryConfig config = config();
+
+        // Sorted differently as UTF-16 chars and as UTF-8 bytes
+        String[] keys = { "z", "\u00e9", "\uff61", "\ud83d\ude00", "e\u0301", "a.b", "a" };
+
+        for (int i = 0; i < keys.length; i++)
+        {
+            set(config, expected, keys[i], Integer.toString(i));
+        }
+
+        config.save();
+        check(config(), expected);
+
+        BinaryConfig loaded = config();
+        set(loaded, expected, "\u00e9!", "merged");
+        set(loaded, expected, "\ud83d\ude00", "replaced");
+        loaded.save();
+
+        check(config(), expected);
+    }
+
+    @Test
+    public void listsKeysInOrder()
+    {
+        BinaryConfig config = config();
+        config.set("b.y", "1");
+        config.set("a", "2");
+        config.set("b.x", "3");
+        config.save();
+
+        List<String> keys = new ArrayList<>(config().keys(""));
+        List<String> sections = new ArrayList<>(config().keys("b"));
+
+        assertEquals(3, keys.size());
+        assertEquals("a", keys.get(0));
+        assertEquals(2, sections.size());
+        assertEquals("b.x", sections.get(0));
+    }
+
+    @Test
+    public void refusesFilesOverTheSizeLimit() throws IOException
+    {
+        // Sparse, so it doesn't take any space
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(BinaryConfig.MAX_SIZE + 1);
+        }
+
+        try
+        {
+            config();
+            fail("Loaded a file bigger than the limit");
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("limit"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesCorruptedEntryCounts() throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file)))
+        {
+            out.writeInt(0x4C434243);
+            out.writeInt(1000);
+            out.writeInt(0x4C434243);
+        }
+
+        config();
+    }
+
+    private BinaryConfig config()
+    {
+        BinaryConfig config = new BinaryConfig(file);
+        config.autoSave(false);
+
+        return config;
+    }
+
+    private static void set(BinaryConfig config, Map<String, String> expected, String key, String value)
+    {
+        config.set(key, value);
+        expected.put(key, value);
+    }
+
+    private static void check(BinaryConfig config, Map<String, String> expected)
+    {
+        expected.forEach((key, value) -> assertEquals(key, value, config.get(key, null)));
+
+        assertNull(config.get("missing", null));
+        assertEquals(expected.size(), config.keys("").size());
+    }
+
+    private static String key(int i)
+    {
+        return String.format("key%05d", i);
+    }
+}
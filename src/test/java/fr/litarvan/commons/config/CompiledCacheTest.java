@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledCacheTest
+{
+    private Path dir;
+    private File file;
+    private File cache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("compiled");
+        file = dir.resolve("config.json").toFile();
+        cache = new File(file.getPath() + ".cache");
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = dir.toFile().listFiles();
+
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                child.delete();
+            }
+        }
+
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void writesTheCacheOnFirstLoad() throws IOException
+    {
+        write("{\"a\":1}");
+        assertEquals(1, load().atInt("a", 0));
+
+        assertTrue(cache.exists());
+        assertEquals(1, load().atInt("a", 0));
+    }
+
+    @Test
+    public void sizeChangeInvalidates() throws IOException
+    {
+        write("{\"a\":1}");
+        load();
+
+        write("{\"a\":12}");
+        assertEquals(12, load().atInt("a", 0));
+    }
+
+    @Test
+    public void sameSizeEditWithNewTimeInvalidates() throws IOException
+    {
+        write("{\"a\":1}");
+        load();
+
+        write("{\"a\":2}");
+        file.setLastModified(file.lastModified() + TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(2, load().atInt("a", 0));
+    }
+
+    @Test
+    public void sameSizeEditInTheSameSecondInvalidates() throws IOException
+    {
+        // The cache is written before the recorded time of the file, like during its last second
+        long time = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+        write("{\"a\":1}");
+        file.setLastModified(time);
+        load();
+
+        // Edited without its time changing, as with a one second resolution
+        write("{\"a\":2}");
+        file.setLastModified(time);
+
+        assertEquals(2, load().atInt("a", 0));
+    }
+
+    @Test
+    public void touchedFileKeepsTheCache() throws IOException
+    {
+        write("{\"a\":1}");
+        load();
+
+        long time = file.lastModified() + TimeUnit.SECONDS.toMillis(10);
+        file.setLastModified(time);
+
+        assertEquals(1, load().atInt("a", 0));
+        assertEquals(time, header(14));
+    }
+
+    @Test
+    public void numbersAreSavedAsWritten() throws IOException
+    {
+        String json = "{\"a\":1e10,\"b\":-0,\"c\":1.50,\"d\":12345678901234567890}";
+
+        write(json);
+        String parsed = save(load());
+
+        write(json);
+        load();
+        String cached = save(load());
+
+        assertEquals(parsed, cached);
+        assertTrue(cached.contains("1e10"));
+        assertTrue(cached.contains("1.50"));
+    }
+
+    private JSONConfig load()
+    {
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.compiledCache(true);
+        config.in(IOSource.file(file));
+        config.load();
+
+        return config;
+    }
+
+    private String save(JSONConfig config) throws IOException
+    {
+        File saved = dir.resolve("saved.json").toFile();
+
+        config.in(IOSource.file(saved));
+        config.save();
+
+        return new String(Files.readAllBytes(saved.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private void write(String content) throws IOException
+    {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long header(int offset) throws IOException
+    {
+        return ByteBuffer.wrap(Files.readAllBytes(cache.toPath())).getLong(offset);
+    }
+}
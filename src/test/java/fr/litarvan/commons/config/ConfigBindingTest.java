@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConfigBindingTest
+{
+    private File file;
+    private JSONConfig config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("binding", ".json");
+        Files.write(file.toPath(), "{\"server\":{\"host\":\"localhost\",\"port\":8080,\"letter\":\"x\",\"ratio\":0.5}}".getBytes(StandardCharsets.UTF_8));
+
+        config = new JSONConfig();
+        config.autoSave(false);
+        config.in(IOSource.file(file)).load();
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void generatedClassReadsTheValues()
+    {
+        Server server = ConfigBinding.bind(config, "server", Server.class);
+
+        assertFalse(Proxy.isProxyClass(server.getClass()));
+        check(server);
+    }
+
+    @Test
+    public void proxyReadsTheValues()
+    {
+        Hidden server = ConfigBinding.bind(config, "server", Hidden.class);
+
+        assertTrue(Proxy.isProxyClass(server.getClass()));
+        check(server);
+    }
+
+    @Test
+    public void valuesFollowTheConfig()
+    {
+        Server server = ConfigBinding.bind(config, "server", Server.class);
+        config.set("server.port", 9090);
+
+        assertEquals(9090, server.port());
+    }
+
+    @Test
+    public void objectMethodsAreNotBound()
+    {
+        Server server = ConfigBinding.bind(config, "server", Server.class);
+        Server other = ConfigBinding.bind(config, "server", Server.class);
+
+        assertEquals("Server(server)", server.toString());
+        assertEquals(server, server);
+        assertNotEquals(server, other);
+        assertEquals(System.identityHashCode(server), server.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void defaultMethodsAreRejected()
+    {
+        ConfigBinding.bind(config, "server", WithDefault.class);
+    }
+
+    private static void check(Server server)
+    {
+        assertEquals("localhost", server.host());
+        assertEquals(8080, server.port());
+        assertEquals(0.5f, server.ratio(), 0);
+        assertEquals('x', server.letter());
+        assertEquals('\0', server.missingLetter());
+        assertEquals(0, server.missingPort());
+        assertNull(server.missingHost());
+        assertEquals(8080, Server.port(server));
+    }
+
+    public interface Server
+    {
+        String host();
+
+        int port();
+
+        float ratio();
+
+        char letter();
+
+        char missingLetter();
+
+        int missingPort();
+
+        String missingHost();
+
+        @Override
+        String toString();
+
+        static int port(Server server)
+        {
+            return server.port();
+        }
+    }
+
+    interface Hidden extends Server
+    {
+    }
+
+    public interface WithDefault
+    {
+        default int port()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DerivedTest
+{
+    private File file;
+    private JSONConfig config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("derived", ".json");
+        Files.write(file.toPath(), "{\"a\":{\"b\":1,\"c\":2},\"d\":3}".getBytes(StandardCharsets.UTF_8));
+
+        config = new JSONConfig();
+        config.autoSave(false);
+        config.in(IOSource.file(file)).load();
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void computedAgainOnlyWhenAReadPathChanges()
+    {
+        AtomicInteger computations = new AtomicInteger();
+
+        try (Derived<Integer> sum = config.derive("sum", c -> {
+            computations.incrementAndGet();
+            return c.atInt("a.b", 0) + c.atInt("d", 0);
+        }))
+        {
+            assertEquals(4, (int) sum.get());
+            assertEquals(4, (int) sum.get());
+            assertEquals(1, computations.get());
+
+            config.set("a.c", 5);
+            assertEquals(4, (int) sum.get());
+            assertEquals(1, computations.get());
+
+            config.set("a.b", 10);
+            assertEquals(13, (int) sum.get());
+            assertEquals(2, computations.get());
+        }
+    }
+
+    @Test
+    public void closedValuesStopListening()
+    {
+        Derived<Integer> value = config.derive("d", c -> c.atInt("d", 0));
+        value.get();
+
+        assertFalse(config.listeners.isEmpty());
+
+        value.close();
+
+        assertTrue(config.listeners.isEmpty());
+        config.set("d", 4);
+        assertEquals(4, (int) value.get());
+    }
+
+    @Test
+    public void unclosedValuesCanBeCollected() throws InterruptedException
+    {
+        WeakReference<Derived<Integer>> reference = new WeakReference<>(config.derive("d", c -> c.atInt("d", 0)));
+
+        for (int i = 0; i < 50 && reference.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+        assertFalse(config.listeners.isEmpty());
+
+        // The listener of the collected value removes itself
+        config.set("d", 4);
+        assertTrue(config.listeners.isEmpty());
+    }
+}
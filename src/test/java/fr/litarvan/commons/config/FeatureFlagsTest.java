@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FeatureFlagsTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("flags", ".json");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void readsUsersFromAJsonArray() throws IOException
+    {
+        FeatureFlags flags = new FeatureFlags(config("{\"flags\":{\"beta\":{\"rollout\":0,\"users\":[12,\"a, b\",\"c\"]}}}"), "flags");
+
+        assertTrue(flags.isEnabled("beta", 12));
+        assertTrue(flags.isEnabled("beta", "a, b"));
+        assertTrue(flags.isEnabled("beta", "c"));
+        assertFalse(flags.isEnabled("beta", "a"));
+        assertFalse(flags.isEnabled("beta", 13));
+    }
+
+    @Test
+    public void readsUsersSeparatedByCommas() throws IOException
+    {
+        FeatureFlags flags = new FeatureFlags(config("{\"flags\":{\"beta\":{\"rollout\":0,\"users\":\"12, c\"}}}"), "flags");
+
+        assertTrue(flags.isEnabled("beta", 12));
+        assertTrue(flags.isEnabled("beta", "c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARolloutAbove100() throws IOException
+    {
+        new FeatureFlags(config("{\"flags\":{\"beta\":{\"rollout\":150}}}"), "flags");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegativeRollout() throws IOException
+    {
+        new FeatureFlags(config("{\"flags\":{\"beta\":{\"rollout\":-1}}}"), "flags");
+    }
+
+    @Test
+    public void reportsAnInvalidChange() throws IOException
+    {
+        JSONConfig config = config("{\"flags\":{\"beta\":{\"rollout\":100}}}");
+        FeatureFlags flags = new FeatureFlags(config, "flags");
+
+        List<Throwable> errors = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+
+        thread.setUncaughtExceptionHandler((t, e) -> errors.add(e));
+
+        try
+        {
+            config.set("flags.beta.rollout", "200");
+
+            // The previous flags are kept
+            assertTrue(flags.isEnabled("beta"));
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0) instanceof IllegalArgumentException);
+        }
+        finally
+        {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+    }
+
+    private JSONConfig config(String content) throws IOException
+    {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.in(IOSource.file(file)).load();
+
+        return config;
+    }
+}
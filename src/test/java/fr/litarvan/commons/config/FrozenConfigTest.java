@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrozenConfigTest
+{
+    @Test
+    public void findsEveryKey()
+    {
+        Map<String, String> values = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++)
+        {
+            values.put("section" + (i % 50) + ".key" + i, Integer.toString(i));
+        }
+
+        FrozenConfig config = FrozenConfig.strings(values);
+
+        assertEquals(values.size(), config.size());
+        values.forEach((key, value) -> assertEquals(value, config.get(key, null)));
+
+        assertNull(config.get("section0.key5000", null));
+        assertEquals("def", config.get("missing", "def"));
+        assertEquals(42, config.getInt("section42.key42", 0));
+    }
+
+    @Test
+    public void findsKeysWithCollidingHashes()
+    {
+        List<String> keys = HashTrieTest.colliding(8);
+        Map<String, String> values = new HashMap<>();
+
+        for (int i = 0; i < keys.size(); i++)
+        {
+            values.put(keys.get(i), Integer.toString(i));
+        }
+
+        values.put("other", "x");
+
+        FrozenConfig config = FrozenConfig.strings(values);
+
+        values.forEach((key, value) -> assertEquals(value, config.get(key, null)));
+
+        // Same hash code as every key, but not in the config
+        assertNull(config.get("AaAaAaAaAaAaAaAaAa", null));
+        assertNull(config.get("BBBBBBBBBBBBBBBBBB", null));
+    }
+
+    @Test
+    public void emptyConfig()
+    {
+        FrozenConfig config = FrozenConfig.strings(new HashMap<>());
+
+        assertEquals(0, config.size());
+        assertEquals("def", config.get("a", "def"));
+        assertFalse(config.has("a"));
+    }
+
+    @Test
+    public void frozenJsonConfig() throws IOException
+    {
+        File file = File.createTempFile("frozen", ".json");
+
+        try
+        {
+            Files.write(file.toPath(), "{\"a\":{\"b\":\"x\",\"c\":[1,2]},\"n\":1.5}".getBytes(StandardCharsets.UTF_8));
+
+            JSONConfig json = new JSONConfig();
+            json.autoSave(false);
+            json.in(IOSource.file(file)).load();
+
+            FrozenConfig config = json.freeze();
+
+            assertEquals("x", config.get("a.b", null));
+            assertEquals("x", config.at("a.b"));
+            assertEquals(2, config.at("a.c", List.class).size());
+            assertEquals(1.5, config.getDouble("n", 0), 0);
+            assertTrue(config.has("a"));
+
+            // The copy doesn't follow the config
+            json.set("a.b", "y");
+            assertEquals("x", config.at("a.b"));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cantBeModified()
+    {
+        FrozenConfig.strings(new HashMap<>()).set("a", "b");
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HashTrieTest
+{
+    @Test
+    public void followsAHashMap()
+    {
+        Map<String, Object> expected = new HashMap<>();
+        HashTrie trie = HashTrie.EMPTY;
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++)
+        {
+            String key = "key" + random.nextInt(3000);
+
+            if (random.nextInt(4) == 0)
+            {
+                expected.remove(key);
+                trie = trie.remove(key);
+            }
+            else
+            {
+                expected.put(key, i);
+                trie = trie.put(key, i);
+            }
+        }
+
+        check(expected, trie);
+    }
+
+    @Test
+    public void collidingHashes()
+    {
+        List<String> keys = colliding(6);
+        HashTrie trie = HashTrie.EMPTY;
+
+        for (String key : keys)
+        {
+            assertEquals(keys.get(0).hashCode(), key.hashCode());
+            trie = trie.put(key, key.toLowerCase());
+        }
+
+        Map<String, Object> expected = new HashMap<>();
+        keys.forEach(key -> expected.put(key, key.toLowerCase()));
+        expected.put("other", 1);
+
+        trie = trie.put("other", 1);
+        check(expected, trie);
+
+        // Not in the trie, but with the same hash as the ones that are
+        assertNull(trie.get("AaAaAaAaAaAaAa"));
+
+        trie = trie.put(keys.get(3), "replaced");
+        expected.put(keys.get(3), "replaced");
+        check(expected, trie);
+
+        for (int i = 0; i < keys.size(); i += 2)
+        {
+            trie = trie.remove(keys.get(i));
+            expected.remove(keys.get(i));
+        }
+
+        check(expected, trie);
+    }
+
+    @Test
+    public void previousVersionsAreKept()
+    {
+        HashTrie first = HashTrie.EMPTY.put("a", 1).put("Aa", 2).put("BB", 3);
+        HashTrie second = first.put("a", 4).remove("BB").put("c", 5);
+
+        assertEquals(1, first.get("a"));
+        assertEquals(3, first.get("BB"));
+        assertNull(first.get("c"));
+
+        assertEquals(4, second.get("a"));
+        assertEquals(2, second.get("Aa"));
+        assertNull(second.get("BB"));
+        assertEquals(5, second.get("c"));
+    }
+
+    @Test
+    public void unchangedMapsAreReused()
+    {
+        HashTrie trie = HashTrie.EMPTY.put("a", 1).put("Aa", 2).put("BB", 3);
+        Object value = trie.get("a");
+
+        assertSame(trie, trie.put("a", value));
+        assertSame(trie, trie.remove("missing"));
+        assertSame(trie, trie.remove("AaAa"));
+    }
+
+    @Test
+    public void removingEverythingGivesTheEmptyMap()
+    {
+        HashTrie trie = HashTrie.EMPTY;
+
+        for (String key : colliding(3))
+        {
+            trie = trie.put(key, key);
+        }
+
+        for (String key : colliding(3))
+        {
+            trie = trie.remove(key);
+        }
+
+        assertSame(HashTrie.EMPTY, trie.remove("x"));
+        check(new HashMap<>(), trie);
+    }
+
+    /**
+     * @return 2^count different strings having the same hash code
+     */
+    static List<String> colliding(int count)
+    {
+        List<String> keys = new ArrayList<>();
+        keys.add("");
+
+        for (int i = 0; i < count; i++)
+        {
+            List<String> longer = new ArrayList<>();
+
+            for (String key : keys)
+            {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+
+            keys = longer;
+        }
+
+        return keys;
+    }
+
+    private static void check(Map<String, Object> expected, HashTrie trie)
+    {
+        expected.forEach((key, value) -> assertEquals(value, trie.get(key)));
+
+        Map<String, Object> listed = new HashMap<>();
+        trie.forEach((key, value) -> assertNull("Listed twice : " + key, listed.put(key, value)));
+
+        assertEquals(expected, listed);
+    }
+}
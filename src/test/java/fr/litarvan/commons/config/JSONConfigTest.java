@@ -0,0 +1,382 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JSONConfigTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("config", ".json");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void lazyLoadFiresMaterializedValues() throws IOException
+    {
+        write("{\"a\":{\"b\":1,\"c\":2},\"d\":5}");
+
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.listenerExecutor(Runnable::run);
+        config.lazy(2).in(IOSource.file(file));
+
+        List<String> events = new ArrayList<>();
+        config.onChange("a.b", (path, previous, value) -> events.add(path + " " + previous + " -> " + value));
+        config.onChange("a.c", (path, previous, value) -> events.add(path + " " + previous + " -> " + value));
+
+        config.load();
+        assertEquals(1, config.atInt("a.b", 0));
+        events.clear();
+
+        // a.b was read, a.c wasn't : its previous value is unknown
+        write("{\"a\":{\"b\":3,\"c\":2},\"d\":5}");
+        config.load();
+
+        assertEquals(1, events.size());
+        assertEquals("a.b 1 -> 3", events.get(0));
+        assertEquals(2, config.atInt("a.c", 0));
+    }
+
+    @Test
+    public void lazyLoadDoesNotFireUnreadMembersAsNull() throws IOException
+    {
+        write("{\"a\":{\"b\":1},\"d\":5}");
+
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.listenerExecutor(Runnable::run);
+
+        List<String> events = new ArrayList<>();
+        config.onChange("d", (path, previous, value) -> events.add(path + " " + previous + " -> " + value));
+
+        config.lazy(1).in(IOSource.file(file));
+        config.load();
+
+        // Loaded from an empty config : the new value is read for the listener
+        assertEquals(1, events.size());
+        assertEquals("d null -> 5", events.get(0));
+    }
+
+    @Test
+    public void asynchronousListenersReceiveCopies() throws IOException
+    {
+        write("{\"a\":{},\"list\":[]}");
+
+        JSONConfig config = config();
+        List<Runnable> later = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+
+        config.listenerExecutor(later::add);
+        config.onChange("a", (path, previous, value) -> events.add(path + " " + previous + " -> " + value));
+        config.onChange("list", (path, previous, value) -> events.add(path + " " + previous + " -> " + value));
+
+        Map<String, Integer> object = new HashMap<>();
+        object.put("x", 1);
+
+        config.set("a.b", object);
+        config.set("a.b.y", 2);
+        config.append("list", 1);
+        config.append("list", 2);
+
+        // Called once every change was made in place
+        later.forEach(Runnable::run);
+
+        assertEquals(4, events.size());
+        assertEquals("a.b null -> {\"x\":1}", events.get(0));
+        assertEquals("a.b.y null -> 2", events.get(1));
+        assertEquals("list [] -> [1]", events.get(2));
+        assertEquals("list [1] -> [1,2]", events.get(3));
+    }
+
+    @Test
+    public void primitiveGettersAgreeWithGson() throws IOException
+    {
+        write("{\"a\":1.0,\"b\":1e3,\"c\":\"2.0\"}");
+
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.in(IOSource.file(file)).load();
+
+        assertEquals(1, config.atInt("a", 0));
+        assertEquals(1000, config.atLong("b", 0));
+        assertEquals(2, config.atInt("c", 0));
+        assertEquals((long) config.at("b", Long.class), config.atLong("b", 0));
+    }
+
+    @Test
+    public void compactSaveRoundTrip() throws IOException
+    {
+        String saved = roundTrip(true);
+
+        assertFalse(saved.contains("\n"));
+        assertFalse(saved.contains("\": "));
+    }
+
+    @Test
+    public void indentedSaveRoundTrip() throws IOException
+    {
+        String saved = roundTrip(false);
+
+        assertTrue(saved.contains("\n  \"text\": "));
+        assertTrue(saved.contains("\n    \"b\": "));
+    }
+
+    @Test
+    public void snapshotReadersSeeWholeEdits() throws Exception
+    {
+        write("{\"a\":{\"x\":0,\"y\":0}}");
+
+        JSONConfig config = config();
+        config.snapshots(true);
+
+        editWhileReading(config);
+    }
+
+    @Test
+    public void stripedReadersSeeWholeEdits() throws Exception
+    {
+        write("{\"a\":{\"x\":0,\"y\":0}}");
+
+        editWhileReading(config());
+    }
+
+    @Test
+    public void concurrentWritesToSectionsAreAllKept() throws Exception
+    {
+        write("{\"shared\":{}}");
+
+        JSONConfig config = config();
+        int writers = 3;
+        int sets = 300;
+        AtomicInteger running = new AtomicInteger(writers);
+
+        concurrently(writers + 1, thread -> {
+            if (thread == writers)
+            {
+                // Reads every section while they are written, which must not fail
+                while (running.get() > 0)
+                {
+                    config.freeze();
+                    config.forEach("shared", (key, value) -> assertNotNull(value));
+                }
+
+                return;
+            }
+
+            try
+            {
+                for (int i = 0; i < sets; i++)
+                {
+                    config.set("section" + thread + ".k" + i, i);
+                    config.set("shared.t" + thread + "k" + i, i);
+                }
+            }
+            finally
+            {
+                running.decrementAndGet();
+            }
+        });
+
+        config.save();
+        JSONConfig loaded = config();
+
+        for (int thread = 0; thread < writers; thread++)
+        {
+            for (int i = 0; i < sets; i++)
+            {
+                assertEquals(i, loaded.atInt("section" + thread + ".k" + i, -1));
+                assertEquals(i, loaded.atInt("shared.t" + thread + "k" + i, -1));
+            }
+        }
+
+        assertEquals(writers * sets, loaded.keys("shared").size());
+    }
+
+    /**
+     * Edit two values together while other threads read them, checking
+     * the readers never see only one of them changed, nor go back in time
+     */
+    private static void editWhileReading(JSONConfig config) throws Exception
+    {
+        AtomicBoolean done = new AtomicBoolean();
+
+        concurrently(3, thread -> {
+            if (thread == 0)
+            {
+                try
+                {
+                    // Each edit saves the file, so there are few of them
+                    for (int i = 1; i <= 100; i++)
+                    {
+                        int value = i;
+                        config.edit(c -> {
+                            c.set("a.x", value);
+                            c.set("a.y", value);
+                        });
+                    }
+                }
+                finally
+                {
+                    done.set(true);
+                }
+
+                return;
+            }
+
+            int last = 0;
+
+            while (!done.get())
+            {
+                if (thread == 1)
+                {
+                    FrozenConfig frozen = config.freeze();
+                    int x = frozen.atInt("a.x", -1);
+
+                    assertEquals(x, frozen.atInt("a.y", -1));
+                    assertTrue(x >= last);
+
+                    last = x;
+                }
+                else
+                {
+                    int x = config.atInt("a.x", -1);
+
+                    assertTrue(x >= last);
+                    last = x;
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a task in several threads at once, failing if one of them fails
+     */
+    private static void concurrently(int threads, IntConsumer task) throws Exception
+    {
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] started = new Thread[threads];
+
+        for (int i = 0; i < threads; i++)
+        {
+            int index = i;
+            started[i] = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    task.accept(index);
+                }
+                catch (Throwable t)
+                {
+                    errors.add(t);
+                }
+            });
+            started[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : started)
+        {
+            thread.join(60000);
+            assertFalse("Thread didn't finish", thread.isAlive());
+        }
+
+        if (!errors.isEmpty())
+        {
+            throw new AssertionError("A thread failed", errors.get(0));
+        }
+    }
+
+    /**
+     * Save a config, load it again, and check every value was kept
+     *
+     * @return The saved content
+     */
+    private String roundTrip(boolean compact) throws IOException
+    {
+        String content = "{\"text\":\"a \\\"quoted\\\" \\t\\\\\\n line\",\"a\":{\"b\":1,\"c\":[1,2.5,\"x\",null,true],\"d\":{}},\"big\":12345678901234567890,\"e\":[]}";
+        write(content);
+
+        JSONConfig config = config();
+        config.compact(compact);
+        config.set("a.added", "value");
+        config.save();
+
+        String saved = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        JsonObject expected = new JsonParser().parse(content).getAsJsonObject();
+        expected.getAsJsonObject("a").addProperty("added", "value");
+
+        assertEquals(expected, new JsonParser().parse(saved));
+
+        JSONConfig loaded = config();
+
+        assertEquals("a \"quoted\" \t\\\n line", loaded.at("text"));
+        assertEquals(1, loaded.atInt("a.b", 0));
+        assertEquals("value", loaded.at("a.added"));
+        assertEquals("12345678901234567890", loaded.at("big"));
+        assertEquals(5, loaded.at("a.c", List.class).size());
+
+        return saved;
+    }
+
+    private JSONConfig config()
+    {
+        JSONConfig config = new JSONConfig();
+        config.autoSave(false);
+        config.in(IOSource.file(file)).load();
+
+        return config;
+    }
+
+    private void write(String content) throws IOException
+    {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveValueTest
+{
+    @Test
+    public void integersWithoutFractionalPart()
+    {
+        assertEquals(1, PrimitiveValue.parse("1.0").getInt(-1));
+        assertEquals(1000, PrimitiveValue.parse("1e3").getInt(-1));
+        assertEquals(1000, PrimitiveValue.parse(" 1.000E3 ").getLong(-1));
+        assertEquals(-20, PrimitiveValue.parse("-2.0e1").getLong(-1));
+        assertEquals(0, PrimitiveValue.parse("0.0").getInt(-1));
+    }
+
+    @Test
+    public void fractionalNumbersAreNotIntegers()
+    {
+        assertEquals(-1, PrimitiveValue.parse("1.5").getInt(-1));
+        assertEquals(-1, PrimitiveValue.parse("1e-3").getLong(-1));
+        assertEquals(1.5, PrimitiveValue.parse("1.5").getDouble(-1), 0);
+    }
+
+    @Test
+    public void outOfRangeIntegers()
+    {
+        assertEquals(-1, PrimitiveValue.parse("1e10").getInt(-1));
+        assertEquals(10000000000L, PrimitiveValue.parse("1e10").getLong(-1));
+        assertEquals(-1, PrimitiveValue.parse("1e19").getLong(-1));
+        assertEquals(-1, PrimitiveValue.parse("1e1000000000").getLong(-1));
+        assertEquals(Long.MAX_VALUE, PrimitiveValue.parse("9223372036854775807.0").getLong(-1));
+    }
+
+    @Test
+    public void nonNumbers()
+    {
+        assertEquals(-1, PrimitiveValue.parse("NaN").getLong(-1));
+        assertEquals(-1, PrimitiveValue.parse("abc").getInt(-1));
+        assertTrue(PrimitiveValue.parse(" TRUE ").getBoolean(false));
+    }
+}
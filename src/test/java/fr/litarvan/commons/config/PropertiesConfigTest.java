@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PropertiesConfigTest
+{
+    @Test
+    public void snapshotModeReadsSetValues()
+    {
+        PropertiesConfig config = new PropertiesConfig();
+        config.autoSave(false);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            config.set("key" + i, String.valueOf(i));
+        }
+
+        config.snapshots(true);
+        config.set("key5", "changed");
+        config.set("added", "1");
+
+        assertEquals("changed", config.get("key5"));
+        assertEquals("999", config.get("key999"));
+        assertEquals(1, config.getInt("added", 0));
+        assertNull(config.get("missing"));
+
+        config.snapshots(false);
+        assertEquals("changed", config.get("key5"));
+    }
+
+    @Test
+    public void snapshotReadersSeeOldOrNewValues() throws InterruptedException
+    {
+        PropertiesConfig config = new PropertiesConfig();
+        config.autoSave(false);
+
+        for (int i = 0; i < 100; i++)
+        {
+            config.set("key" + i, "0");
+        }
+
+        config.snapshots(true);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get())
+            {
+                for (int i = 0; i < 100; i++)
+                {
+                    int value = config.getInt("key" + i, -1);
+
+                    if (value < 0)
+                    {
+                        error.set("key" + i + " was missing");
+                    }
+                }
+            }
+        });
+
+        reader.start();
+
+        for (int round = 1; round <= 50; round++)
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                config.set("key" + i, String.valueOf(round));
+            }
+        }
+
+        done.set(true);
+        reader.join();
+
+        assertNull(error.get());
+        assertEquals(50, config.getInt("key99", 0));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Adrien "Litarvan" Navratil
+ *
+ * This file is part of Litarvan Commons.
+ *
+ * Litarvan Common is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Litarvan Common is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Litarvan Common.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.litarvan.commons.config;
+
+import fr.litarvan.commons.io.IOSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ValueCacheTest
+{
+    @Test
+    public void staysWithinItsCapacity()
+    {
+        ValueCache cache = new ValueCache(16);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.store("missing" + i, String.class, null, cache.stamp());
+        }
+
+        assertTrue(cache.size() <= 16);
+        assertEquals(1000 - 16, cache.getEvictions());
+    }
+
+    @Test
+    public void keepsStoredValuesUntilFull()
+    {
+        ValueCache cache = new ValueCache(16);
+
+        cache.store("a", String.class, "x", cache.stamp());
+        cache.store("b", String.class, null, cache.stamp());
+
+        assertEquals("x", cache.lookup("a", String.class));
+        assertNull(cache.lookup("b", String.class));
+        assertSame(ValueCache.NOT_CACHED, cache.lookup("a", Integer.class));
+    }
+
+    @Test
+    public void invalidationDropsParentsAndChildren()
+    {
+        ValueCache cache = new ValueCache();
+
+        for (String path : new String[] { "a", "a.b", "a.b.c", "a.c" })
+        {
+            cache.store(path, String.class, path, cache.stamp());
+        }
+
+        cache.invalidate("a.b");
+
+        assertSame(ValueCache.NOT_CACHED, cache.lookup("a", String.class));
+        assertSame(ValueCache.NOT_CACHED, cache.lookup("a.b", String.class));
+        assertSame(ValueCache.NOT_CACHED, cache.lookup("a.b.c", String.class));
+        assertEquals("a.c", cache.lookup("a.c", String.class));
+    }
+
+    @Test
+    public void staleStampIsNotStored()
+    {
+        ValueCache cache = new ValueCache();
+        long stamp = cache.stamp();
+
+        cache.invalidate("a");
+        cache.store("a", String.class, "x", stamp);
+
+        assertSame(ValueCache.NOT_CACHED, cache.lookup("a", String.class));
+    }
+
+    @Test
+    public void mutableValuesAreNotShared() throws IOException
+    {
+        File file = File.createTempFile("cache", ".json");
+
+        try
+        {
+            Files.write(file.toPath(), "{\"list\":[1,2],\"name\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+
+            JSONConfig config = new JSONConfig();
+            config.autoSave(false);
+            config.in(IOSource.file(file)).load();
+
+            List<?> first = config.at("list", List.class);
+            first.clear();
+
+            assertEquals(2, config.at("list", List.class).size());
+            assertSame(config.at("name", String.class), config.at("name", String.class));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}